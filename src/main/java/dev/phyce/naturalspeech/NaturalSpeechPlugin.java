@@ -215,6 +215,15 @@ public class NaturalSpeechPlugin extends Plugin {
 				textToSpeech.loadShortenedPhrases();
 				break;
 
+			case ConfigKeys.AUDIO_BUFFER_MILLIS:
+			case ConfigKeys.CROSSFADE_MILLIS:
+			case ConfigKeys.NORMALIZE_LOUDNESS:
+			case ConfigKeys.INNER_VOICE_EFFECT:
+			case ConfigKeys.QUEUED_AUDIO_LIMIT:
+				log.trace("Detected audio setting changes, reloading into TextToSpeech");
+				textToSpeech.loadAudioSettings();
+				break;
+
 			case ConfigKeys.PERSONAL_VOICE:
 			case ConfigKeys.GLOBAL_NPC_VOICE:
 			case ConfigKeys.SYSTEM_VOICE:
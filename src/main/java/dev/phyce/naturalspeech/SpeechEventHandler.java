@@ -3,23 +3,32 @@ package dev.phyce.naturalspeech;
 import com.google.inject.Inject;
 import dev.phyce.naturalspeech.configs.NaturalSpeechConfig;
 import static dev.phyce.naturalspeech.enums.Locations.inGrandExchange;
+import dev.phyce.naturalspeech.enums.SpeechPriority;
 import dev.phyce.naturalspeech.exceptions.ModelLocalUnavailableException;
 import dev.phyce.naturalspeech.exceptions.VoiceSelectionOutOfOption;
 import dev.phyce.naturalspeech.helpers.PluginHelper;
 import static dev.phyce.naturalspeech.helpers.PluginHelper.*;
+import dev.phyce.naturalspeech.tts.AdmissionController;
 import dev.phyce.naturalspeech.tts.MagicUsernames;
 import dev.phyce.naturalspeech.tts.MuteManager;
 import dev.phyce.naturalspeech.tts.TextToSpeech;
 import dev.phyce.naturalspeech.tts.VoiceID;
 import dev.phyce.naturalspeech.tts.VoiceManager;
+import dev.phyce.naturalspeech.utils.TextCanonicalizer;
 import dev.phyce.naturalspeech.utils.TextUtil;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
 import net.runelite.api.NPC;
 import net.runelite.api.Player;
+import net.runelite.api.coords.WorldPoint;
 import net.runelite.api.events.ChatMessage;
+import net.runelite.api.events.GameTick;
 import net.runelite.api.events.OverheadTextChanged;
 import net.runelite.api.events.WidgetLoaded;
 import net.runelite.api.widgets.ComponentID;
@@ -41,6 +50,10 @@ public class SpeechEventHandler {
 
 	private final ClientThread clientThread;
 
+	// NPCs share names ("Guard"), and their overhead text shares the name's audio queue.
+	// Audio queue name to the index of the NPC whose text it's speaking, only touched on the client thread
+	private final Map<String, Integer> speakingNpcIndices = new HashMap<>();
+
 	@Inject
 	public SpeechEventHandler(Client client, TextToSpeech textToSpeech, NaturalSpeechConfig config,
 							  VoiceManager voiceManager, MuteManager muteManager, SpamDetection spamDetection, ClientThread clientThread) {
@@ -62,11 +75,11 @@ public class SpeechEventHandler {
 		String username;
 		int distance;
 		VoiceID voiceId;
+		SpeechPriority priority;
 		username = Text.standardize(message.getName());
 		message.setName(username);
-		String text = message.getMessage()
-			.replace("<lt>", "<")
-			.replace("<gt>", ">");
+		// tags and <lt>/<gt> out of the way before phrases are expanded, canonicalized once it's final
+		String text = TextCanonicalizer.removeTags(message.getMessage());
 
 		if (isChatMessageMuted(message)) return;
 
@@ -74,13 +87,17 @@ public class SpeechEventHandler {
 			if (isChatInnerVoice(message)) {
 				username = MagicUsernames.LOCAL_USER;
 				distance = 0;
+				priority = SpeechPriority.NORMAL;
 				voiceId = voiceManager.getVoiceIDFromUsername(username);
 				text = textToSpeech.expandShortenedPhrases(text);
+				// queued apart from the player's own chat, so the thoughts effect only applies to them
+				if (isExamine(message.getType())) username = TextToSpeech.AUDIO_QUEUE_THOUGHTS;
 
 				log.debug("Inner voice {} used for {} for {}. ", voiceId, message.getType(), username);
 			}
 			else if (isChatOtherPlayerVoice(message)) {
 				distance = config.distanceFadeEnabled()? getDistance(username) : 0;
+				priority = SpeechPriority.LOW;
 				voiceId = voiceManager.getVoiceIDFromUsername(username);
 				text = textToSpeech.expandShortenedPhrases(text);
 
@@ -89,6 +106,7 @@ public class SpeechEventHandler {
 			else if (isChatSystemVoice(message.getType())) {
 				username = MagicUsernames.SYSTEM;
 				distance = 0;
+				priority = SpeechPriority.NORMAL;
 				text = Text.standardize(text);
 				voiceId = voiceManager.getVoiceIDFromUsername(username);
 
@@ -105,7 +123,14 @@ public class SpeechEventHandler {
 			return;
 		}
 
-		textToSpeech.speak(voiceId, text, distance, username);
+		TextCanonicalizer.CanonicalText canonicalText = TextCanonicalizer.canonicalize(text);
+		text = canonicalText.getText();
+		if (priority == SpeechPriority.LOW && isTooLate(voiceId, text, username)) return;
+
+		AdmissionController.Decision decision = textToSpeech.speak(voiceId, canonicalText, distance, username, priority);
+		if (decision != AdmissionController.Decision.ADMITTED) {
+			log.debug("Message from {} was {}, synthesis is over budget. Message:{}", username, decision, text);
+		}
 	}
 
 	@Subscribe(priority=-100)
@@ -120,14 +145,15 @@ public class SpeechEventHandler {
 					return;
 				}
 				log.trace("Player dialog textWidget detected:{}", textWidget.getText());
-				String text = Text.sanitizeMultilineText(textWidget.getText());
+				TextCanonicalizer.CanonicalText text =
+					TextCanonicalizer.canonicalize(Text.sanitizeMultilineText(textWidget.getText()));
 				VoiceID voiceID;
 				try {
 					voiceID = voiceManager.getVoiceIDFromUsername(MagicUsernames.LOCAL_USER);
 				} catch (VoiceSelectionOutOfOption e) {
 					throw new RuntimeException(e);
 				}
-				textToSpeech.speak(voiceID, text, 0, MagicUsernames.LOCAL_USER);
+				textToSpeech.speak(voiceID, text, 0, TextToSpeech.AUDIO_QUEUE_DIALOGUE, SpeechPriority.HIGH);
 			});
 		} else if (event.getGroupId() == InterfaceID.DIALOG_NPC) {
 			// InvokeAtTickEnd to wait until the text has loaded in
@@ -150,7 +176,8 @@ public class SpeechEventHandler {
 				}
 				log.trace("NPC dialog textWidget detected:{}", textWidget.getText());
 
-				String text = Text.sanitizeMultilineText(textWidget.getText());
+				TextCanonicalizer.CanonicalText text =
+					TextCanonicalizer.canonicalize(Text.sanitizeMultilineText(textWidget.getText()));
 				String npcName = npcNameWidget.getText();
 				int npcCompId = headModelWidget.getModelId();
 
@@ -163,7 +190,7 @@ public class SpeechEventHandler {
 				try { voiceID = voiceManager.getVoiceIDFromNPCId(npcCompId, npcName); }
 				catch (VoiceSelectionOutOfOption e) { throw new RuntimeException(e); }
 
-				textToSpeech.speak(voiceID, text, 0, npcName);
+				textToSpeech.speak(voiceID, text, 0, TextToSpeech.AUDIO_QUEUE_DIALOGUE, SpeechPriority.HIGH);
 			});
 		}
 	}
@@ -182,7 +209,14 @@ public class SpeechEventHandler {
 			VoiceID voiceID = null;
 			try {
 				voiceID = voiceManager.getVoiceIDFromNPCId(npc.getId(), npc.getName());
-				textToSpeech.speak(voiceID, event.getOverheadText(), distance, npc.getName());
+				TextCanonicalizer.CanonicalText text =
+					TextCanonicalizer.canonicalize(TextCanonicalizer.removeTags(event.getOverheadText()));
+				if (isTooLate(voiceID, text.getText(), npc.getName())) return;
+				AdmissionController.Decision decision =
+					textToSpeech.speak(voiceID, text, distance, npc.getName(), SpeechPriority.LOW);
+				if (decision != AdmissionController.Decision.REJECTED) {
+					speakingNpcIndices.put(npc.getName(), npc.getIndex());
+				}
 			} catch (VoiceSelectionOutOfOption e) {
 				log.error(
 					"Voice Selection ran out of options for NPC. No suitable active voice found NPC ID:{} NPC name:{}",
@@ -191,6 +225,39 @@ public class SpeechEventHandler {
 		}
 	}
 
+	// speakers keep moving while they talk, follow them with the volume
+	@Subscribe
+	private void onGameTick(GameTick event) {
+		if (textToSpeech.activePiperProcessCount() == 0) return;
+
+		Player localPlayer = client.getLocalPlayer();
+		if (localPlayer == null) return;
+		WorldPoint location = localPlayer.getWorldLocation();
+
+		if (config.distanceFadeEnabled()) {
+			for (Player player : client.getPlayers()) {
+				if (player == localPlayer || player.getName() == null) continue;
+				textToSpeech.updateDistance(Text.standardize(player.getName()),
+					location.distanceTo(player.getWorldLocation()));
+			}
+		}
+
+		if (config.npcOverheadEnabled() && !speakingNpcIndices.isEmpty()) {
+			Set<String> present = new HashSet<>();
+			for (NPC npc : client.getNpcs()) {
+				if (npc.getName() == null) continue;
+				// only the NPC that is talking, not every NPC with its name
+				Integer index = speakingNpcIndices.get(npc.getName());
+				if (index == null || index != npc.getIndex()) continue;
+
+				present.add(npc.getName());
+				textToSpeech.updateDistance(npc.getName(), location.distanceTo(npc.getWorldLocation()));
+			}
+			// despawned speakers
+			speakingNpcIndices.keySet().retainAll(present);
+		}
+	}
+
 	public static boolean isChatInnerVoice(ChatMessage message) {
 		switch (message.getType()) {
 			case PUBLICCHAT:
@@ -224,6 +291,17 @@ public class SpeechEventHandler {
 		}
 	}
 
+	public static boolean isExamine(ChatMessageType messageType) {
+		switch (messageType) {
+			case ITEM_EXAMINE:
+			case NPC_EXAMINE:
+			case OBJECT_EXAMINE:
+				return true;
+			default:
+				return false;
+		}
+	}
+
 	public static boolean isChatSystemVoice(ChatMessageType messageType) {
 		switch (messageType) {
 			case ENGINE:
@@ -304,6 +382,19 @@ public class SpeechEventHandler {
 		return false;
 	}
 
+	private boolean isTooLate(VoiceID voiceID, String text, String audioQueueName) {
+		int maxDelaySeconds = config.maxSpeechDelay();
+		if (maxDelaySeconds <= 0) return false;
+
+		long estimate = textToSpeech.estimateTimeToPlaybackMillis(voiceID, text, audioQueueName);
+		if (estimate > maxDelaySeconds * 1000L) {
+			log.debug("Skipping message from {}, estimated to play {}ms late, over the {}s limit. Message:{}",
+				audioQueueName, estimate, maxDelaySeconds, text);
+			return true;
+		}
+		return false;
+	}
+
 	private boolean isTooCrowded() {
 		Player localPlayer = client.getLocalPlayer();
 		if (localPlayer == null) return false;
@@ -1,6 +1,7 @@
 package dev.phyce.naturalspeech.configs;
 
 import static dev.phyce.naturalspeech.configs.NaturalSpeechConfig.CONFIG_GROUP;
+import dev.phyce.naturalspeech.enums.OverLengthPolicy;
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
@@ -36,9 +37,23 @@ public interface NaturalSpeechConfig extends Config {
 		public static final String MUTE_OTHERS = "muteOthers";
 		public static final String MUTE_LEVEL_THRESHOLD = "muteLevelThreshold";
 		public static final String MUTE_CROWDS = "muteCrowds";
+		public static final String MAX_SPEECH_DELAY = "maxSpeechDelay";
+		public static final String MAX_VOICES = "maxVoices";
+		public static final String MAX_MESSAGE_LENGTH = "maxMessageLength";
+		public static final String OVER_LENGTH_POLICY = "overLengthPolicy";
 		public static final String SHORTENED_PHRASES = "shortenedPhrases";
 		public static final String HOLD_SHIFT_RIGHT_CLICK_MENU = "holdShiftRightClickMenu";
 		public static final String MUTE_GRAND_EXCHANGE_NPC_SPAM = "muteGrandExchangeNpcSpam";
+		public static final String SHARED_MEMORY_TRANSPORT = "sharedMemoryTransport";
+		public static final String AUDIO_BUFFER_MILLIS = "audioBufferMillis";
+		public static final String TRIM_SILENCE = "trimSilence";
+		public static final String SILENCE_THRESHOLD = "silenceThreshold";
+		public static final String SILENCE_PADDING = "silencePadding";
+		public static final String CROSSFADE_MILLIS = "crossfadeMillis";
+		public static final String NORMALIZE_LOUDNESS = "normalizeLoudness";
+		public static final String INNER_VOICE_EFFECT = "innerVoiceEffect";
+		public static final String QUEUED_AUDIO_LIMIT = "queuedAudioLimit";
+		public static final String LATENCY_FIRST_FRAGMENTS = "latencyFirstFragments";
 	}
 
 	//<editor-fold desc="> General Settings">
@@ -354,6 +369,53 @@ public interface NaturalSpeechConfig extends Config {
 		return 0;
 	}
 
+	@ConfigItem(
+		position=8,
+		keyName=ConfigKeys.MAX_SPEECH_DELAY,
+		name="Messages later than (seconds)",
+		description="Skip messages from other players and NPCs that would start playing more than this many seconds late. 0 for no limit.",
+		section=muteOptionsSection
+	)
+	@Range(min=0, max=60)
+	default int maxSpeechDelay() {
+		return 0;
+	}
+
+	@ConfigItem(
+		position=9,
+		keyName=ConfigKeys.MAX_VOICES,
+		name="Voices at once",
+		description="Most voices speaking at the same time, the farthest voice is stopped for a new one. Dialogue is never stopped. 0 for no limit.",
+		section=muteOptionsSection
+	)
+	@Range(min=0, max=32)
+	default int maxVoices() {
+		return 0;
+	}
+
+	@ConfigItem(
+		position=10,
+		keyName=ConfigKeys.MAX_MESSAGE_LENGTH,
+		name="Message length limit",
+		description="Longest message spoken in characters, after shortened phrases are expanded. Dialogue is never cut. 0 for no limit.",
+		section=muteOptionsSection
+	)
+	@Range(min=0, max=1000)
+	default int maxMessageLength() {
+		return 0;
+	}
+
+	@ConfigItem(
+		position=11,
+		keyName=ConfigKeys.OVER_LENGTH_POLICY,
+		name="Longer messages",
+		description="What happens to messages over the length limit.",
+		section=muteOptionsSection
+	)
+	default OverLengthPolicy overLengthPolicy() {
+		return OverLengthPolicy.SUMMARIZE;
+	}
+
 	//</editor-fold>
 
 	//<editor-fold desc="> Other Settings">
@@ -440,4 +502,129 @@ public interface NaturalSpeechConfig extends Config {
 			"tbh=to be honest\n";
 	}
 	//</editor-fold>
+
+	//<editor-fold desc="> Advanced Settings">
+	@ConfigSection(
+		name="Advanced",
+		description="Performance tuning, the defaults work for most people",
+		position=4,
+		closedByDefault=true
+	)
+	String advancedOptionsSection = "advancedOptionsSection";
+
+	@ConfigItem(
+		position=1,
+		keyName=ConfigKeys.SHARED_MEMORY_TRANSPORT,
+		name="Shared memory audio (Linux)",
+		description="Piper writes audio to /dev/shm instead of piping it through stdout. Restart the engine to apply.",
+		section=advancedOptionsSection
+	)
+	default boolean sharedMemoryTransport() {
+		return false;
+	}
+
+	@Range(min=20, max=1000)
+	@ConfigItem(
+		position=2,
+		keyName=ConfigKeys.AUDIO_BUFFER_MILLIS,
+		name="Audio buffer (ms)",
+		description="Size of the audio output buffer. Smaller is more responsive, larger is safer against stutter.",
+		section=advancedOptionsSection
+	)
+	default int audioBufferMillis() {
+		return 200;
+	}
+
+	@ConfigItem(
+		position=3,
+		keyName=ConfigKeys.TRIM_SILENCE,
+		name="Trim silence",
+		description="Cut the silence Piper adds before and after every sentence. Restart the engine to apply.",
+		section=advancedOptionsSection
+	)
+	default boolean trimSilence() {
+		return true;
+	}
+
+	@Range(min=-90, max=-10)
+	@ConfigItem(
+		position=4,
+		keyName=ConfigKeys.SILENCE_THRESHOLD,
+		name="Silence threshold (dB)",
+		description="Audio quieter than this counts as silence when trimming. Restart the engine to apply.",
+		section=advancedOptionsSection
+	)
+	default int silenceThreshold() {
+		return -50;
+	}
+
+	@Range(min=0, max=500)
+	@ConfigItem(
+		position=5,
+		keyName=ConfigKeys.SILENCE_PADDING,
+		name="Silence padding (ms)",
+		description="Silence kept before and after speech when trimming. Restart the engine to apply.",
+		section=advancedOptionsSection
+	)
+	default int silencePadding() {
+		return 40;
+	}
+
+	@Range(min=0, max=200)
+	@ConfigItem(
+		position=6,
+		keyName=ConfigKeys.CROSSFADE_MILLIS,
+		name="Sentence crossfade (ms)",
+		description="Overlap the end of a sentence with the start of the next. 0 plays them back to back.",
+		section=advancedOptionsSection
+	)
+	default int crossfadeMillis() {
+		return 0;
+	}
+
+	@ConfigItem(
+		position=7,
+		keyName=ConfigKeys.NORMALIZE_LOUDNESS,
+		name="Normalize loudness",
+		description="Even out the volume of loud and quiet voices.",
+		section=advancedOptionsSection
+	)
+	default boolean normalizeLoudness() {
+		return false;
+	}
+
+	@ConfigItem(
+		position=8,
+		keyName=ConfigKeys.INNER_VOICE_EFFECT,
+		name="Thoughts effect",
+		description="Muffle examine text, your character's thoughts, with a slight echo. Your own chat is not affected.",
+		section=advancedOptionsSection
+	)
+	default boolean innerVoiceEffect() {
+		return false;
+	}
+
+	@Range(min=1, max=256)
+	@ConfigItem(
+		position=9,
+		keyName=ConfigKeys.QUEUED_AUDIO_LIMIT,
+		name="Queued audio limit (MB)",
+		description="Most memory used by speech waiting to play. Over the limit, the oldest chat is dropped first.",
+		section=advancedOptionsSection
+	)
+	default int queuedAudioLimit() {
+		return 16;
+	}
+
+	@ConfigItem(
+		position=10,
+		keyName=ConfigKeys.LATENCY_FIRST_FRAGMENTS,
+		name="Short first fragment",
+		description="Speak a short first piece of long messages sooner, later pieces grow as fast as the model keeps up.",
+		section=advancedOptionsSection
+	)
+	default boolean latencyFirstFragments() {
+		return false;
+	}
+	//</editor-fold>
 }
\ No newline at end of file
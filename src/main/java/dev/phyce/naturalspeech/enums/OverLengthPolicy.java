@@ -0,0 +1,21 @@
+package dev.phyce.naturalspeech.enums;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * What happens to a message longer than the length limit.
+ */
+@AllArgsConstructor
+public enum OverLengthPolicy {
+	// cut off at the last word that fits
+	TRUNCATE("Cut off"),
+	// cut off, then say "and more"
+	SUMMARIZE("Cut off, say \"and more\"");
+
+	private final String name;
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
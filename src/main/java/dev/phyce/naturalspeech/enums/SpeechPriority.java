@@ -0,0 +1,13 @@
+package dev.phyce.naturalspeech.enums;
+
+/**
+ * How important a piece of speech is when synthesis capacity runs out.
+ */
+public enum SpeechPriority {
+	// Things the player is actively reading or asked for, dialogue and voice previews. Always admitted.
+	HIGH,
+	// The player's own messages and system messages.
+	NORMAL,
+	// Everyone else, public chat and NPC overheads. First to be shortened or dropped.
+	LOW
+}
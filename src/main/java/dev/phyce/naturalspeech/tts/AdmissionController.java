@@ -0,0 +1,72 @@
+package dev.phyce.naturalspeech.tts;
+
+import dev.phyce.naturalspeech.enums.SpeechPriority;
+import dev.phyce.naturalspeech.tts.piper.Piper;
+import java.util.Collection;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Each Piper has its own task queue, so several running models can oversubscribe the CPU.
+ * AdmissionController keeps one machine-wide budget of outstanding synthesis work (in characters)
+ * across every Piper, and decides what happens to a new message when the budget is used up.
+ */
+@Slf4j
+public class AdmissionController {
+	// roughly a couple of fragments in flight per core
+	private static final int BUDGET_CHARS_PER_CORE = 200;
+
+	private final Collection<Piper> pipers;
+	private final int budget;
+
+	public enum Decision {
+		ADMITTED,
+		// only the first fragment is synthesized
+		DOWNGRADED,
+		REJECTED
+	}
+
+	/**
+	 * @param pipers live view of the running pipers, has to be safe to iterate while pipers start and stop
+	 */
+	public AdmissionController(Collection<Piper> pipers) {
+		this.pipers = pipers;
+		this.budget = BUDGET_CHARS_PER_CORE * Runtime.getRuntime().availableProcessors();
+	}
+
+	public int getOutstandingChars() {
+		int outstanding = 0;
+		for (Piper piper : pipers) {
+			outstanding += piper.getOutstandingChars();
+		}
+		return outstanding;
+	}
+
+	/**
+	 * @param cost              characters of the whole message
+	 * @param firstFragmentCost characters of the first fragment, what's left if the message is downgraded
+	 */
+	public Decision admit(SpeechPriority priority, int cost, int firstFragmentCost) {
+		if (priority == SpeechPriority.HIGH) return Decision.ADMITTED;
+
+		// low priority messages only get half the budget, so there is always room left for the rest
+		int available = priority == SpeechPriority.LOW? budget / 2: budget;
+		int outstanding = getOutstandingChars();
+
+		Decision decision;
+		if (outstanding + cost <= available) {
+			decision = Decision.ADMITTED;
+		}
+		else if (outstanding + firstFragmentCost <= available) {
+			decision = Decision.DOWNGRADED;
+		}
+		else {
+			decision = Decision.REJECTED;
+		}
+
+		if (decision != Decision.ADMITTED) {
+			log.debug("{} {} priority message, {} outstanding + {} chars over {} budget",
+				decision, priority, outstanding, cost, available);
+		}
+		return decision;
+	}
+}
@@ -0,0 +1,114 @@
+package dev.phyce.naturalspeech.tts;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opening and closing a SourceDataLine costs tens of milliseconds on some systems (PulseAudio),
+ * so lines are kept open and reused. Lines are pooled by AudioFormat, and closed after sitting idle.
+ * Thread-safe.
+ */
+@Slf4j
+public class AudioLinePool {
+	private static final long IDLE_TIMEOUT_MS = 10_000;
+	private static final long REAP_INTERVAL_MS = 1_000;
+
+	// AudioFormat doesn't implement equals, keyed by AudioFormat::toString which lists every property
+	private final Map<String, Deque<IdleLine>> idleLines = new HashMap<>();
+	private int bufferMillis;
+
+	public AudioLinePool(ScheduledExecutorService executor, int bufferMillis) {
+		this.bufferMillis = bufferMillis;
+		executor.scheduleWithFixedDelay(this::closeIdleLines, REAP_INTERVAL_MS, REAP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Only applies to lines opened after the change.
+	 */
+	public synchronized void setBufferMillis(int bufferMillis) {
+		this.bufferMillis = bufferMillis;
+	}
+
+	/**
+	 * @return a started line, reused when an idle one with the same format is available.
+	 */
+	public SourceDataLine acquire(AudioFormat format) throws LineUnavailableException {
+		int bufferBytes;
+		synchronized (this) {
+			Deque<IdleLine> lines = idleLines.get(format.toString());
+			while (lines != null && !lines.isEmpty()) {
+				SourceDataLine line = lines.pop().line;
+				if (line.isOpen()) {
+					line.start();
+					return line;
+				}
+			}
+			bufferBytes = (int) (format.getFrameRate() * bufferMillis / 1000) * format.getFrameSize();
+		}
+
+		// opening is slow, don't hold the lock
+		DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
+		SourceDataLine line = (SourceDataLine) AudioSystem.getLine(info);
+		line.open(format, bufferBytes);
+		line.start();
+		log.debug("Opened new line {} with {} byte buffer", format, line.getBufferSize());
+		return line;
+	}
+
+	/**
+	 * Returns a line to the pool instead of closing it. The line should already be drained.
+	 */
+	public void release(SourceDataLine line) {
+		if (!line.isOpen()) return;
+
+		line.stop();
+		synchronized (this) {
+			idleLines.computeIfAbsent(line.getFormat().toString(), format -> new ArrayDeque<>())
+				.push(new IdleLine(line, System.currentTimeMillis()));
+		}
+	}
+
+	public synchronized void closeAll() {
+		for (Deque<IdleLine> lines : idleLines.values()) {
+			for (IdleLine idleLine : lines) idleLine.line.close();
+		}
+		idleLines.clear();
+	}
+
+	private synchronized void closeIdleLines() {
+		long now = System.currentTimeMillis();
+		for (Deque<IdleLine> lines : idleLines.values()) {
+			// most recently released is pushed to the front, the oldest are at the back
+			Iterator<IdleLine> iter = lines.descendingIterator();
+			while (iter.hasNext()) {
+				IdleLine idleLine = iter.next();
+				if (now - idleLine.releasedAt < IDLE_TIMEOUT_MS) break;
+
+				log.debug("Closing line {}, idle for {}ms", idleLine.line.getFormat(), now - idleLine.releasedAt);
+				idleLine.line.close();
+				iter.remove();
+			}
+		}
+	}
+
+	private static class IdleLine {
+		final SourceDataLine line;
+		final long releasedAt;
+
+		IdleLine(SourceDataLine line, long releasedAt) {
+			this.line = line;
+			this.releasedAt = releasedAt;
+		}
+	}
+}
@@ -0,0 +1,340 @@
+package dev.phyce.naturalspeech.tts;
+
+import dev.phyce.naturalspeech.tts.dsp.AudioEffect;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.sound.sampled.AudioFormat;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sums every playing voice into a single output sink, instead of a line per voice.
+ * Mixes in fixed-size blocks on one thread, the sink's blocking write paces the mixer.
+ * Thread-safe.
+ */
+@Slf4j
+public class AudioMixer {
+	private static final int BLOCK_MILLIS = 20;
+
+	public static final AudioFormat OUTPUT_FORMAT = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+		22050.0F, // Sample Rate
+		16, // Sample Size in Bits
+		1, // Channels
+		2, // Frame Size
+		22050.0F, // Frame Rate
+		false); // Little Endian
+
+	@Getter
+	private final AudioFormat format;
+	private final AudioSink sink;
+	// guarded by itself, the mixer thread waits on it while there is nothing to play
+	private final List<Channel> channels = new ArrayList<>();
+	// only touched by the mixer thread, finished callbacks run after the channels lock is released
+	private final List<Channel> finishedChannels = new ArrayList<>();
+
+	private final int blockFrames;
+	private final int[] mixBlock;
+	// a channel's samples for the block, before effects and gain
+	private final int[] channelBlock;
+	private final byte[] outputBlock;
+
+	// samples the end of a clip overlaps the start of the next, 0 butts them together
+	private volatile int crossfadeSamples = 0;
+
+	private Thread mixerThread;
+
+	/**
+	 * @param sink in OUTPUT_FORMAT
+	 */
+	public AudioMixer(AudioSink sink) {
+		this.sink = sink;
+		this.format = sink.getFormat();
+
+		blockFrames = (int) (format.getFrameRate() * BLOCK_MILLIS / 1000);
+		mixBlock = new int[blockFrames];
+		channelBlock = new int[blockFrames];
+		outputBlock = new byte[blockFrames * format.getFrameSize()];
+	}
+
+	public void setCrossfadeMillis(int crossfadeMillis) {
+		crossfadeSamples = (int) (format.getFrameRate() * crossfadeMillis / 1000);
+	}
+
+	/**
+	 * @param clip 16-bit little endian mono PCM in the mixer's format, its position is left untouched.
+	 * @param gain in decibels, 0 is full volume.
+	 * @param preempting pauses every other channel while this one plays, they resume where they left off.
+	 * @param effect applied to the channel's samples before gain, null for none.
+	 * @param source continues the channel with more clips, without a gap between them.
+	 *
+	 * @return the channel for the clip, it's silent until passed to {@link #start}.
+	 */
+	public Channel createChannel(
+		ByteBuffer clip,
+		float gain,
+		boolean preempting,
+		@CheckForNull AudioEffect effect,
+		ClipSource source
+	) {
+		return new Channel(clip, gain, preempting, effect, source);
+	}
+
+	/**
+	 * Starts mixing the channel, from here on the mixer thread can end it at any time.
+	 */
+	public void start(Channel channel) {
+		synchronized (channels) {
+			if (mixerThread == null) {
+				mixerThread = new Thread(this::mix, "AudioMixer Thread");
+				mixerThread.setDaemon(true);
+				mixerThread.setPriority(Thread.MAX_PRIORITY);
+				mixerThread.start();
+			}
+			channels.add(channel);
+			channels.notify();
+		}
+	}
+
+	/**
+	 * Cuts off every playing channel.
+	 */
+	public void stopAll() {
+		List<Channel> stopped;
+		synchronized (channels) {
+			stopped = new ArrayList<>(channels);
+			channels.clear();
+		}
+		for (Channel channel : stopped) channel.end();
+	}
+
+	private void mix() {
+		boolean active = false;
+		try {
+			while (true) {
+				boolean idle;
+				synchronized (channels) {
+					idle = channels.isEmpty();
+					if (!idle) mixBlock();
+				}
+
+				// outside the lock, callbacks queue the next clip with play()
+				for (Channel channel : finishedChannels) channel.end();
+				finishedChannels.clear();
+
+				if (idle) {
+					// nobody is talking, the sink can let the tail play out and free its resources
+					if (active) {
+						sink.idle();
+						active = false;
+					}
+					synchronized (channels) {
+						while (channels.isEmpty()) channels.wait();
+					}
+					continue;
+				}
+
+				try {
+					sink.write(outputBlock, 0, outputBlock.length);
+					active = true;
+				} catch (IOException e) {
+					log.error("Mixer failed to write to {}, dropping playing clips", sink, e);
+					stopAll();
+				}
+			}
+		} catch (InterruptedException e) {
+			log.debug("AudioMixer interrupted, exiting");
+		} finally {
+			sink.idle();
+		}
+	}
+
+	// called with the channels lock held
+	private void mixBlock() {
+		for (int i = 0; i < blockFrames; i++) mixBlock[i] = 0;
+
+		boolean preempted = false;
+		for (Channel channel : channels) {
+			if (channel.preempting) {
+				preempted = true;
+				break;
+			}
+		}
+
+		int crossfadeSamples = this.crossfadeSamples;
+		Iterator<Channel> iter = channels.iterator();
+		while (iter.hasNext()) {
+			Channel channel = iter.next();
+			// paused at the block boundary, keeps its position
+			if (preempted && !channel.preempting) {
+				// silent while paused, no need to fade out
+				if (channel.cancelled) {
+					finishedChannels.add(channel);
+					iter.remove();
+				}
+				continue;
+			}
+
+			// cancelled channels get one more block to ramp down to silence, instead of a click
+			boolean faded = channel.cancelled && channel.gain == 0;
+			if (faded || !channel.mixInto(mixBlock, channelBlock, blockFrames, crossfadeSamples)) {
+				finishedChannels.add(channel);
+				iter.remove();
+			}
+		}
+
+		for (int i = 0; i < blockFrames; i++) {
+			int sample = mixBlock[i];
+			// several loud voices can sum past 16 bits
+			sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+			outputBlock[i * 2] = (byte) sample;
+			outputBlock[i * 2 + 1] = (byte) (sample >> 8);
+		}
+	}
+
+	public interface ClipSource {
+		/**
+		 * Called on the mixer thread with the mixer locked when the channel's clip is about to run out, must not block.
+		 *
+		 * @return the clip to continue with, null ends the channel.
+		 */
+		@CheckForNull
+		ByteBuffer nextClip(Channel channel);
+
+		/**
+		 * Called on the mixer thread once the channel ran out of clips or was cut off.
+		 */
+		default void onEnded(Channel channel) {}
+	}
+
+	public static class Channel {
+		// Q15 fixed point, UNITY_GAIN is 1.0
+		private static final int UNITY_GAIN = 1 << 15;
+
+		private final ClipSource source;
+		private final boolean preempting;
+		@CheckForNull
+		private final AudioEffect effect;
+		private ByteBuffer clip;
+		// the next clip while it is being crossfaded in
+		private ByteBuffer incoming = null;
+		private int fadeLength = 0;
+		private int fadePosition = 0;
+		// only ask the source once per clip for a crossfade, it's asked again when the clip runs out
+		private boolean prefetched = false;
+
+		// set from any thread, the mixer ramps gain towards it over a block to avoid clicks
+		private volatile int targetGain;
+		// only touched by the mixer thread
+		private int gain;
+		private volatile boolean cancelled = false;
+
+		private Channel(
+			ByteBuffer clip,
+			float gain,
+			boolean preempting,
+			@CheckForNull AudioEffect effect,
+			ClipSource source
+		) {
+			this.clip = samples(clip);
+			this.preempting = preempting;
+			this.effect = effect;
+			this.source = source;
+			setGain(gain);
+			// the first block starts at the requested gain, only later changes are ramped
+			this.gain = targetGain;
+		}
+
+		/**
+		 * @param gain in decibels, ramped to over the next mixed block.
+		 */
+		public void setGain(float gain) {
+			if (cancelled) return;
+			double linear = Math.min(1, Math.pow(10, gain / 20));
+			targetGain = (int) Math.round(linear * UNITY_GAIN);
+		}
+
+		/**
+		 * Fades out over the next block and ends the channel, without pulling any more clips.
+		 */
+		public void cancel() {
+			cancelled = true;
+			targetGain = 0;
+		}
+
+		/**
+		 * @return false once the source has no clips left
+		 */
+		private boolean mixInto(int[] block, int[] channelBlock, int frames, int crossfadeSamples) {
+			boolean more = true;
+			int i = 0;
+			while (i < frames) {
+				int remaining = clip.remaining() / 2;
+
+				if (crossfadeSamples > 0 && !prefetched && !cancelled && remaining <= crossfadeSamples) {
+					prefetched = true;
+					ByteBuffer next = source.nextClip(this);
+					if (next != null) {
+						incoming = samples(next);
+						fadeLength = Math.min(remaining, incoming.remaining() / 2);
+						fadePosition = 0;
+					}
+				}
+
+				if (remaining == 0) {
+					ByteBuffer next = cancelled? null: incoming != null? incoming: source.nextClip(this);
+					if (next == null) {
+						more = false;
+						break;
+					}
+					clip = incoming != null? incoming: samples(next);
+					incoming = null;
+					prefetched = false;
+					continue;
+				}
+
+				int sample = clip.getShort();
+				if (incoming != null && fadePosition < fadeLength) {
+					int in = incoming.getShort();
+					sample = (sample * (fadeLength - fadePosition) + in * fadePosition) / fadeLength;
+					fadePosition++;
+				}
+
+				channelBlock[i++] = sample;
+			}
+
+			int count = i;
+			if (effect != null) effect.process(channelBlock, count);
+
+			int target = targetGain;
+			int gain = this.gain;
+			// linear ramp across the block, snaps once the remaining difference is under a step
+			int step = (target - gain) / frames;
+			if (step == 0) gain = target;
+
+			for (i = 0; i < count; i++) {
+				gain += step;
+				// effects can push samples past 16 bits, multiply wide
+				block[i] += (int) (((long) channelBlock[i] * gain) >> 15);
+			}
+			this.gain = gain;
+			return more;
+		}
+
+		private void end() {
+			try {
+				source.onEnded(this);
+			} catch (RuntimeException e) {
+				log.error("Mixer channel callback failed", e);
+			}
+		}
+
+		private static ByteBuffer samples(ByteBuffer clip) {
+			return clip.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+}
@@ -1,25 +1,156 @@
 package dev.phyce.naturalspeech.tts;
 
+import java.nio.ByteBuffer;
+import dev.phyce.naturalspeech.enums.SpeechPriority;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.Value;
 
 public class AudioQueue {
-	private final AtomicBoolean playing = new AtomicBoolean(false);
-	public ConcurrentLinkedQueue<AudioTask> queue = new ConcurrentLinkedQueue<>();
+	public enum State {
+		IDLE,
+		// the queue has a mixer channel, which pulls the queued clips as it runs out
+		PLAYING
+	}
+
+	// guarded by this, transitions happen together with taking a task so a new clip can't be missed
+	private State state = State.IDLE;
+	private final ConcurrentLinkedQueue<AudioTask> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicLong queuedBytes = new AtomicLong(0);
+	private final QueuedAudioBudget budget;
+	// mixer channel playing this queue, null when idle
+	private AudioMixer.Channel channel = null;
+	// cancelPlaying came in after the queue started playing but before its channel was set
+	private boolean cancelPending = false;
+	// live volume from distance tracking, overrides the volume the task was queued with, NaN when untracked
+	private float trackedVolume = Float.NaN;
+
+	public AudioQueue(QueuedAudioBudget budget) {
+		this.budget = budget;
+		budget.register(this);
+	}
+
+	public void add(AudioTask task) {
+		queue.add(task);
+		long bytes = task.getAudioClip().remaining();
+		queuedBytes.addAndGet(bytes);
+		budget.onQueued(bytes);
+	}
+
+	/**
+	 * @return the oldest clip, null if empty.
+	 */
+	public AudioTask poll() {
+		AudioTask task = queue.poll();
+		if (task != null) {
+			long bytes = task.getAudioClip().remaining();
+			queuedBytes.addAndGet(-bytes);
+			budget.onDequeued(bytes);
+		}
+		return task;
+	}
+
+	AudioTask peek() {
+		return queue.peek();
+	}
+
+	public void clear() {
+		//noinspection StatementWithEmptyBody
+		while (poll() != null) {}
+	}
+
+	public boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	/**
+	 * @return bytes of audio waiting to be played, not counting the clip in the mixer.
+	 */
+	public long getQueuedBytes() {
+		return queuedBytes.get();
+	}
+
+	/**
+	 * @return true if nothing is playing or queued, so the queue can be dropped.
+	 */
+	public synchronized boolean isIdleAndEmpty() {
+		return state == State.IDLE && queue.isEmpty();
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
 
 	public boolean isPlaying() {
-		return playing.get();
+		return getState() == State.PLAYING;
+	}
+
+	/**
+	 * Changes the volume of the clip playing right now and the rest of the queued clips,
+	 * for speakers that move while talking.
+	 */
+	public synchronized void updateVolume(float volume) {
+		if (state != State.PLAYING) return;
+
+		trackedVolume = volume;
+		if (channel != null) channel.setGain(volume);
+	}
+
+	/**
+	 * Fades out the clip playing right now, the queue goes idle once the mixer lets go of it.
+	 * Clear the queue first, or the next clip is picked up again.
+	 */
+	public synchronized void cancelPlaying() {
+		if (channel != null) channel.cancel();
+		else if (state == State.PLAYING) cancelPending = true;
+	}
+
+	/**
+	 * Called before the channel is started, so the mixer can't end it and a cancel can't miss it in between.
+	 */
+	synchronized void setChannel(AudioMixer.Channel channel) {
+		this.channel = channel;
+		if (cancelPending) {
+			cancelPending = false;
+			channel.cancel();
+		}
+	}
+
+	synchronized float volumeFor(AudioTask task) {
+		return Float.isNaN(trackedVolume)? task.getVolume(): trackedVolume;
+	}
+
+	/**
+	 * @return the task to start playing, null if the queue is already playing or has nothing queued.
+	 */
+	synchronized AudioTask startIfIdle() {
+		if (state == State.PLAYING) return null;
+		return next();
 	}
 
-	public void setPlaying(boolean playing) {
-		this.playing.set(playing);
+	/**
+	 * Takes the next task for a playing queue, going idle when the queue is empty.
+	 */
+	synchronized AudioTask next() {
+		AudioTask task = poll();
+		state = task == null? State.IDLE: State.PLAYING;
+		if (task == null) {
+			channel = null;
+			cancelPending = false;
+			trackedVolume = Float.NaN;
+		}
+		return task;
 	}
 
 	// decoupled audio queue from plugin logic
 	@Value
 	public static class AudioTask {
-		byte[] audioClip;
+		// PCM, heap backed when piped from stdout or memory mapped with the shared memory transport
+		ByteBuffer audioClip;
 		float volume;
+		// HIGH priority clips pause every other queue while they play
+		SpeechPriority priority;
+		// System.nanoTime() when synthesized, for evicting the oldest clips first
+		long queuedAt;
 	}
 }
@@ -0,0 +1,24 @@
+package dev.phyce.naturalspeech.tts;
+
+import java.io.IOException;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Where the mixer's output goes. The sound device normally, the null and WAV sinks run the whole
+ * speech pipeline on machines without one, for benchmarks and integration tests.
+ * Only called from the mixer thread.
+ */
+public interface AudioSink {
+	AudioFormat getFormat();
+
+	/**
+	 * Blocks roughly as long as it takes to play the audio, which paces the mixer.
+	 * Sinks without a clock return right away, so the mixer runs as fast as it can.
+	 */
+	void write(byte[] buffer, int offset, int length) throws IOException, InterruptedException;
+
+	/**
+	 * The mixer ran out of audio. Resources can be freed until the next write.
+	 */
+	void idle();
+}
@@ -0,0 +1,52 @@
+package dev.phyce.naturalspeech.tts;
+
+import java.io.IOException;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Plays through the sound device, with a line borrowed from the pool while there is audio.
+ */
+public class LineAudioSink implements AudioSink {
+	private final AudioLinePool linePool;
+	private final AudioFormat format;
+	private SourceDataLine line = null;
+
+	public LineAudioSink(AudioLinePool linePool, AudioFormat format) {
+		this.linePool = linePool;
+		this.format = format;
+	}
+
+	@Override
+	public AudioFormat getFormat() {
+		return format;
+	}
+
+	@Override
+	public void write(byte[] buffer, int offset, int length) throws IOException {
+		if (line == null) {
+			try {
+				line = linePool.acquire(format);
+			} catch (LineUnavailableException e) {
+				throw new IOException("Failed to open an output line", e);
+			}
+		}
+		line.write(buffer, offset, length);
+	}
+
+	@Override
+	public void idle() {
+		if (line == null) return;
+
+		// let the tail play out, then hand the line back to the pool
+		line.drain();
+		linePool.release(line);
+		line = null;
+	}
+
+	@Override
+	public String toString() {
+		return "line sink";
+	}
+}
@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
@@ -43,6 +44,8 @@ public class ModelRepository {
 	public final static String METADATA_EXTENSION = ".metadata.json";
 	public final static String MODEL_REPO_FILENAME = "model_repository.json";
 	public final static String MODEL_FOLDER_NAME = "models";
+	// piper's own default, used when the model metadata doesn't say
+	public final static int DEFAULT_SAMPLE_RATE = 22050;
 
 	private final Downloader downloader;
 
@@ -221,11 +224,13 @@ public class ModelRepository {
 				voiceMetadata.setModelName(modelURL.getModelName());
 			}
 
+			File onnxMetadata = voiceFolder.resolve(modelName + MODEL_METADATA_EXTENSION).toFile();
 			return new ModelLocal(
 				modelURL.getModelName(),
 				voiceFolder.resolve(modelName + EXTENSION).toFile(),
-				voiceFolder.resolve(modelName + MODEL_METADATA_EXTENSION).toFile(),
-				voiceMetadatas
+				onnxMetadata,
+				voiceMetadatas,
+				readSampleRate(onnxMetadata)
 			);
 
 		} catch (IOException e) {
@@ -234,6 +239,20 @@ public class ModelRepository {
 		}
 	}
 
+	private int readSampleRate(File onnxMetadata) throws IOException {
+		try (FileInputStream fis = new FileInputStream(onnxMetadata)) {
+			JsonObject metadata = gson.fromJson(new InputStreamReader(fis), JsonObject.class);
+			JsonObject audio = metadata != null? metadata.getAsJsonObject("audio"): null;
+			if (audio == null || !audio.has("sample_rate")) {
+				log.warn("No sample rate in {}, assuming {}Hz", onnxMetadata.getName(), DEFAULT_SAMPLE_RATE);
+				return DEFAULT_SAMPLE_RATE;
+			}
+			return audio.get("sample_rate").getAsInt();
+		} catch (JsonParseException | ClassCastException e) {
+			throw new IOException("Failed to read model metadata " + onnxMetadata.getName(), e);
+		}
+	}
+
 	public void addRepositoryChangedListener(ModelRepositoryListener listener) {
 		changeListeners.add(listener);
 	}
@@ -328,6 +347,8 @@ public class ModelRepository {
 		File onnx;
 		File onnxMetadata;
 		VoiceMetadata[] voiceMetadata;
+		// audio.sample_rate from onnxMetadata, piper outputs 16-bit mono PCM at this rate
+		int sampleRate;
 	}
 
 	public interface ModelRepositoryListener {
@@ -0,0 +1,56 @@
+package dev.phyce.naturalspeech.tts;
+
+import javax.sound.sampled.AudioFormat;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Discards audio. Either at the rate it would play, to measure the pipeline as a user hears it,
+ * or as fast as it's mixed, to measure throughput.
+ */
+@Slf4j
+public class NullAudioSink implements AudioSink {
+	// how far ahead of the clock writes may run, like a sound card's buffer
+	private static final long LOOKAHEAD_NANOS = 100_000_000;
+
+	private final AudioFormat format;
+	private final boolean realtime;
+	// when everything written so far would have finished playing
+	private long playheadNanos = 0;
+	@Getter
+	private volatile long bytesWritten = 0;
+
+	public NullAudioSink(AudioFormat format, boolean realtime) {
+		this.format = format;
+		this.realtime = realtime;
+	}
+
+	@Override
+	public AudioFormat getFormat() {
+		return format;
+	}
+
+	@Override
+	public void write(byte[] buffer, int offset, int length) throws InterruptedException {
+		bytesWritten += length;
+		if (!realtime) return;
+
+		long now = System.nanoTime();
+		// starting after an idle period, playback starts now
+		if (playheadNanos < now) playheadNanos = now;
+		playheadNanos += (long) (length / format.getFrameSize() / format.getFrameRate() * 1_000_000_000L);
+
+		long ahead = playheadNanos - now - LOOKAHEAD_NANOS;
+		if (ahead > 0) Thread.sleep(ahead / 1_000_000, (int) (ahead % 1_000_000));
+	}
+
+	@Override
+	public void idle() {
+		log.trace("{} discarded {} bytes so far", this, bytesWritten);
+	}
+
+	@Override
+	public String toString() {
+		return realtime? "realtime null sink": "unlimited null sink";
+	}
+}
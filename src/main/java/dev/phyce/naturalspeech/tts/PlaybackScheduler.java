@@ -0,0 +1,72 @@
+package dev.phyce.naturalspeech.tts;
+
+import dev.phyce.naturalspeech.enums.SpeechPriority;
+import dev.phyce.naturalspeech.tts.dsp.VoiceEffects;
+import java.nio.ByteBuffer;
+import javax.annotation.CheckForNull;
+
+/**
+ * Plays audio queues through the mixer without a thread per queue.
+ * A queue is kicked off when a clip is ready and it's idle, after that its mixer channel pulls
+ * the queue's next clips as the current one runs out, so fragments of a message play without a gap.
+ */
+public class PlaybackScheduler {
+	private final AudioPlayer audioPlayer;
+	private final VoiceEffects voiceEffects;
+
+	public PlaybackScheduler(AudioPlayer audioPlayer, VoiceEffects voiceEffects) {
+		this.audioPlayer = audioPlayer;
+		this.voiceEffects = voiceEffects;
+	}
+
+	/**
+	 * Call after adding a task to the queue. Does nothing if the queue is already playing,
+	 * the new task is pulled when the current clip runs out.
+	 */
+	public void onClipReady(String audioQueueName, AudioQueue audioQueue) {
+		AudioQueue.AudioTask task = audioQueue.startIfIdle();
+		if (task != null) play(audioQueueName, audioQueue, task);
+	}
+
+	private void play(String audioQueueName, AudioQueue audioQueue, AudioQueue.AudioTask task) {
+		boolean preempting = task.getPriority() == SpeechPriority.HIGH;
+		int sampleRate = (int) audioPlayer.getFormat().getSampleRate();
+		AudioMixer.Channel channel = audioPlayer.createClipChannel(
+			task.getAudioClip(),
+			audioQueue.volumeFor(task),
+			preempting,
+			voiceEffects.create(audioQueueName, sampleRate),
+			new QueueClipSource(audioQueueName, audioQueue));
+		// the queue knows its channel before the mixer can end it, or voice stealing could miss it
+		audioQueue.setChannel(channel);
+		audioPlayer.start(channel);
+	}
+
+	private class QueueClipSource implements AudioMixer.ClipSource {
+		private final String audioQueueName;
+		private final AudioQueue audioQueue;
+
+		QueueClipSource(String audioQueueName, AudioQueue audioQueue) {
+			this.audioQueueName = audioQueueName;
+			this.audioQueue = audioQueue;
+		}
+
+		// the queue stays PLAYING, only onEnded lets it go idle
+		@CheckForNull
+		@Override
+		public ByteBuffer nextClip(AudioMixer.Channel channel) {
+			AudioQueue.AudioTask task = audioQueue.poll();
+			if (task == null) return null;
+
+			channel.setGain(audioQueue.volumeFor(task));
+			return task.getAudioClip();
+		}
+
+		// a clip queued between the last nextClip and now is picked up here, so it's never stranded
+		@Override
+		public void onEnded(AudioMixer.Channel channel) {
+			AudioQueue.AudioTask next = audioQueue.next();
+			if (next != null) play(audioQueueName, audioQueue, next);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package dev.phyce.naturalspeech.tts;
+
+import dev.phyce.naturalspeech.enums.SpeechPriority;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caps the PCM waiting in every AudioQueue of every model combined, so heap doesn't grow without
+ * bound when audio is synthesized faster than it can be played. Over budget, the oldest clip of the
+ * lowest priority is evicted, until the total fits again. Clips already in the mixer don't count.
+ */
+@Slf4j
+public class QueuedAudioBudget {
+	private final Set<AudioQueue> audioQueues = ConcurrentHashMap.newKeySet();
+	private final AtomicLong queuedBytes = new AtomicLong(0);
+	private volatile long maxBytes;
+
+	public QueuedAudioBudget(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public long getQueuedBytes() {
+		return queuedBytes.get();
+	}
+
+	void register(AudioQueue audioQueue) {
+		audioQueues.add(audioQueue);
+	}
+
+	/**
+	 * Releases what's left in the queue, it won't be played.
+	 */
+	public void unregister(AudioQueue audioQueue) {
+		audioQueues.remove(audioQueue);
+		audioQueue.clear();
+	}
+
+	void onQueued(long bytes) {
+		if (queuedBytes.addAndGet(bytes) > maxBytes) evict();
+	}
+
+	void onDequeued(long bytes) {
+		queuedBytes.addAndGet(-bytes);
+	}
+
+	private synchronized void evict() {
+		while (queuedBytes.get() > maxBytes) {
+			AudioQueue victim = null;
+			AudioQueue.AudioTask oldest = null;
+			for (AudioQueue audioQueue : audioQueues) {
+				// queues are in order, the head is each queue's oldest clip
+				AudioQueue.AudioTask head = audioQueue.peek();
+				if (head == null) continue;
+				if (oldest == null || isEvictedBefore(head, oldest)) {
+					victim = audioQueue;
+					oldest = head;
+				}
+			}
+			if (victim == null) return;
+
+			AudioQueue.AudioTask evicted = victim.poll();
+			if (evicted != null) {
+				log.debug("Queued audio over the {} byte budget, evicted a {} byte {} priority clip",
+					maxBytes, evicted.getAudioClip().remaining(), evicted.getPriority());
+			}
+		}
+	}
+
+	private static boolean isEvictedBefore(AudioQueue.AudioTask a, AudioQueue.AudioTask b) {
+		// LOW is last in the enum, evicted first
+		if (a.getPriority() != b.getPriority()) return a.getPriority().compareTo(b.getPriority()) > 0;
+		return a.getQueuedAt() < b.getQueuedAt();
+	}
+}
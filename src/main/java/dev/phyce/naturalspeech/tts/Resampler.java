@@ -0,0 +1,110 @@
+package dev.phyce.naturalspeech.tts;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Polyphase windowed-sinc resampler for 16-bit little endian mono PCM.
+ * The rate ratio is reduced to up/down by their gcd, and one filter phase is precomputed for each
+ * of the up positions an output sample can fall between two input samples, so resampling
+ * is a single pass of multiply-adds with no allocation beyond the output clip.
+ */
+public class Resampler {
+	// zero crossings of the sinc kept on each side of the center
+	private static final int HALF_TAPS = 16;
+	private static final int TAPS = HALF_TAPS * 2;
+	// cutoff slightly under nyquist, leaves room for the transition band
+	private static final double ROLLOFF = 0.95;
+
+	private final int up;
+	private final int down;
+	// filter[phase * TAPS + tap]
+	private final float[] filter;
+
+	public Resampler(int inputRate, int outputRate) {
+		int gcd = gcd(inputRate, outputRate);
+		this.up = outputRate / gcd;
+		this.down = inputRate / gcd;
+
+		if (isPassthrough()) {
+			filter = null;
+			return;
+		}
+
+		// relative to the input rate, when down sampling the cutoff drops to the output's nyquist
+		double cutoff = 0.5 * ROLLOFF * Math.min(1.0, (double) up / down);
+		filter = new float[up * TAPS];
+		for (int phase = 0; phase < up; phase++) {
+			double offset = (double) phase / up;
+			double sum = 0;
+			for (int tap = 0; tap < TAPS; tap++) {
+				// distance in input samples from the output sample's position
+				double x = tap - (HALF_TAPS - 1) - offset;
+				double value = 2 * cutoff * sinc(2 * cutoff * x) * blackman(x);
+				filter[phase * TAPS + tap] = (float) value;
+				sum += value;
+			}
+			// unity gain at DC for every phase
+			for (int tap = 0; tap < TAPS; tap++) filter[phase * TAPS + tap] /= (float) sum;
+		}
+	}
+
+	public boolean isPassthrough() {
+		return up == down;
+	}
+
+	/**
+	 * @return the clip at the output rate, the same buffer when the rates match.
+	 */
+	public ByteBuffer resample(ByteBuffer clip) {
+		if (isPassthrough()) return clip;
+
+		ByteBuffer input = clip.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int base = input.position();
+		int inputSamples = input.remaining() / 2;
+		int outputSamples = (int) ((long) inputSamples * up / down);
+		byte[] output = new byte[outputSamples * 2];
+
+		for (int n = 0; n < outputSamples; n++) {
+			long position = (long) n * down;
+			int index = (int) (position / up);
+			int phase = (int) (position % up);
+			int coefficients = phase * TAPS;
+
+			float acc = 0;
+			int first = index - (HALF_TAPS - 1);
+			for (int tap = 0; tap < TAPS; tap++) {
+				int i = first + tap;
+				// zero past either end
+				if (i < 0 || i >= inputSamples) continue;
+				acc += input.getShort(base + i * 2) * filter[coefficients + tap];
+			}
+
+			int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(acc)));
+			output[n * 2] = (byte) sample;
+			output[n * 2 + 1] = (byte) (sample >> 8);
+		}
+		return ByteBuffer.wrap(output).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static double sinc(double x) {
+		if (x == 0) return 1;
+		return Math.sin(Math.PI * x) / (Math.PI * x);
+	}
+
+	// window over the filter's span, centered on x = 0
+	private static double blackman(double x) {
+		double t = (x + HALF_TAPS) / TAPS;
+		if (t < 0 || t > 1) return 0;
+		return 0.42 - 0.5 * Math.cos(2 * Math.PI * t) + 0.08 * Math.cos(4 * Math.PI * t);
+	}
+
+	private static int gcd(int a, int b) {
+		while (b != 0) {
+			int t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+}
@@ -0,0 +1,72 @@
+package dev.phyce.naturalspeech.tts;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Cuts the leading and trailing silence Piper pads every clip with.
+ * Scans short windows from each end until one has enough energy, then keeps a little padding
+ * so soft consonants aren't clipped. Works on 16-bit little endian mono PCM, without copying.
+ */
+public class SilenceTrimmer {
+	private static final int WINDOW_MILLIS = 10;
+
+	// mean squared amplitude a window has to exceed to count as speech
+	private final double thresholdEnergy;
+	private final int paddingMillis;
+
+	/**
+	 * @param thresholdDecibels window loudness (dBFS) below which is considered silence, ex: -50
+	 * @param paddingMillis silence kept before and after the speech
+	 */
+	public SilenceTrimmer(int thresholdDecibels, int paddingMillis) {
+		double amplitude = Math.pow(10, thresholdDecibels / 20.0) * Short.MAX_VALUE;
+		this.thresholdEnergy = amplitude * amplitude;
+		this.paddingMillis = paddingMillis;
+	}
+
+	/**
+	 * @return a slice of the clip without the leading and trailing silence, empty if the whole clip is silent.
+	 */
+	public ByteBuffer trim(ByteBuffer clip, int sampleRate) {
+		ByteBuffer samples = clip.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int start = samples.position();
+		int sampleCount = samples.remaining() / 2;
+		int window = Math.max(1, sampleRate * WINDOW_MILLIS / 1000);
+
+		int first = -1;
+		for (int offset = 0; offset < sampleCount; offset += window) {
+			if (isLoud(samples, start, offset, Math.min(window, sampleCount - offset))) {
+				first = offset;
+				break;
+			}
+		}
+		if (first == -1) return samples.limit(start).slice();
+
+		int last = first;
+		// windows are aligned from the end, so the final partial window is checked too
+		for (int end = sampleCount; end > first; end -= window) {
+			int offset = Math.max(first, end - window);
+			if (isLoud(samples, start, offset, end - offset)) {
+				last = end;
+				break;
+			}
+		}
+
+		int padding = sampleRate * paddingMillis / 1000;
+		int from = Math.max(0, first - padding);
+		int to = Math.min(sampleCount, last + padding);
+
+		samples.limit(start + to * 2).position(start + from * 2);
+		return samples.slice();
+	}
+
+	private boolean isLoud(ByteBuffer samples, int start, int offset, int length) {
+		long energy = 0;
+		for (int i = offset; i < offset + length; i++) {
+			int sample = samples.getShort(start + i * 2);
+			energy += sample * sample;
+		}
+		return energy > thresholdEnergy * length;
+	}
+}
@@ -0,0 +1,140 @@
+package dev.phyce.naturalspeech.tts;
+
+import dev.phyce.naturalspeech.enums.OverLengthPolicy;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cheap pass over a message before synthesis, so spam doesn't cost as much as a real sentence.
+ * Collapses runs of a repeated character ("soooooo" -> "sooo"), of a short repeated pattern
+ * ("lolololol" -> "lolol"), and of a repeated word, then caps the length of the message.
+ * Digits are never collapsed, "1000000" is a number. Thread-safe.
+ */
+public class SynthesisGuard {
+	private static final int MAX_CHARACTER_RUN = 3;
+	private static final int MIN_PATTERN_LENGTH = 2;
+	private static final int MAX_PATTERN_LENGTH = 4;
+	private static final int MAX_PATTERN_RUN = 2;
+	private static final int MAX_WORD_RUN = 3;
+	private static final String SUMMARY = ", and more";
+
+	// synthesis the guard saved since startup, predicted by the cost model
+	private final AtomicLong avoidedMillis = new AtomicLong(0);
+
+	/**
+	 * @param text canonical text, words separated by single spaces
+	 * @param maxLength characters, 0 for no limit
+	 */
+	public String guard(String text, int maxLength, OverLengthPolicy policy) {
+		String guarded = collapseWords(collapseCharacters(text));
+		if (maxLength > 0 && guarded.length() > maxLength) guarded = cap(guarded, maxLength, policy);
+		return guarded;
+	}
+
+	public void recordAvoided(long millis) {
+		if (millis > 0) avoidedMillis.addAndGet(millis);
+	}
+
+	public long getAvoidedMillis() {
+		return avoidedMillis.get();
+	}
+
+	private static String collapseCharacters(String text) {
+		int[] codePoints = text.codePoints().toArray();
+		StringBuilder collapsed = null;
+
+		int i = 0;
+		while (i < codePoints.length) {
+			int skip = 0;
+			int keep = 0;
+
+			int run = 1;
+			while (i + run < codePoints.length && codePoints[i + run] == codePoints[i]) run++;
+			if (run > MAX_CHARACTER_RUN && isCollapsible(codePoints[i])) {
+				keep = MAX_CHARACTER_RUN;
+				skip = run;
+			}
+			else {
+				for (int length = MIN_PATTERN_LENGTH; length <= MAX_PATTERN_LENGTH; length++) {
+					int repeats = countRepeats(codePoints, i, length);
+					if (repeats > MAX_PATTERN_RUN) {
+						keep = length * MAX_PATTERN_RUN;
+						skip = length * repeats;
+						break;
+					}
+				}
+			}
+
+			if (skip == 0) {
+				if (collapsed != null) collapsed.appendCodePoint(codePoints[i]);
+				i++;
+				continue;
+			}
+
+			// copy lazily, most messages have nothing to collapse
+			if (collapsed == null) {
+				collapsed = new StringBuilder(text.length());
+				for (int j = 0; j < i; j++) collapsed.appendCodePoint(codePoints[j]);
+			}
+			for (int j = i; j < i + keep; j++) collapsed.appendCodePoint(codePoints[j]);
+			i += skip;
+		}
+
+		return collapsed != null? collapsed.toString(): text;
+	}
+
+	/**
+	 * @return how many times the pattern starting at the index repeats back to back, 0 if it can't be collapsed.
+	 */
+	private static int countRepeats(int[] codePoints, int start, int length) {
+		if (start + length > codePoints.length) return 0;
+		for (int i = start; i < start + length; i++) {
+			if (!isCollapsible(codePoints[i]) || codePoints[i] == ' ') return 0;
+		}
+
+		int repeats = 1;
+		int next = start + length;
+		while (next + length <= codePoints.length) {
+			for (int i = 0; i < length; i++) {
+				if (codePoints[next + i] != codePoints[start + i]) return repeats;
+			}
+			repeats++;
+			next += length;
+		}
+		return repeats;
+	}
+
+	private static boolean isCollapsible(int codePoint) {
+		return !Character.isDigit(codePoint);
+	}
+
+	private static String collapseWords(String text) {
+		String[] words = text.split(" ");
+		if (words.length <= MAX_WORD_RUN) return text;
+
+		StringBuilder collapsed = new StringBuilder(text.length());
+		int run = 0;
+		for (int i = 0; i < words.length; i++) {
+			run = i > 0 && words[i].equalsIgnoreCase(words[i - 1])? run + 1: 1;
+			if (run > MAX_WORD_RUN) continue;
+
+			if (collapsed.length() > 0) collapsed.append(' ');
+			collapsed.append(words[i]);
+		}
+		return collapsed.length() == text.length()? text: collapsed.toString();
+	}
+
+	private static String cap(String text, int maxLength, OverLengthPolicy policy) {
+		// the last whole word that fits, a single long word is cut mid-word
+		int cut = text.lastIndexOf(' ', maxLength);
+		if (cut <= 0) cut = Character.isLowSurrogate(text.charAt(maxLength))? maxLength - 1: maxLength;
+		String capped = text.substring(0, cut);
+
+		if (policy == OverLengthPolicy.SUMMARIZE) {
+			int end = capped.length();
+			// "foo, bar," -> "foo, bar, and more"
+			while (end > 0 && !Character.isLetterOrDigit(capped.charAt(end - 1))) end--;
+			capped = capped.substring(0, end) + SUMMARY;
+		}
+		return capped;
+	}
+}
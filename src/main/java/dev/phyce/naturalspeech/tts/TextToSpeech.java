@@ -8,21 +8,32 @@ import dev.phyce.naturalspeech.configs.NaturalSpeechConfig;
 import dev.phyce.naturalspeech.configs.NaturalSpeechRuntimeConfig;
 import dev.phyce.naturalspeech.configs.json.ttsconfigs.ModelConfigDatum;
 import dev.phyce.naturalspeech.configs.json.ttsconfigs.PiperConfigDatum;
+import dev.phyce.naturalspeech.enums.SpeechPriority;
 import dev.phyce.naturalspeech.exceptions.ModelLocalUnavailableException;
 import dev.phyce.naturalspeech.exceptions.PiperNotActiveException;
 import dev.phyce.naturalspeech.helpers.PluginHelper;
 import dev.phyce.naturalspeech.macos.MacUnquarantine;
+import dev.phyce.naturalspeech.tts.dsp.VoiceEffects;
 import dev.phyce.naturalspeech.tts.piper.Piper;
 import dev.phyce.naturalspeech.tts.piper.PiperProcess;
+import dev.phyce.naturalspeech.tts.piper.SynthesisCostModel;
 import dev.phyce.naturalspeech.utils.OSValidator;
+import dev.phyce.naturalspeech.utils.PhraseExpander;
+import dev.phyce.naturalspeech.utils.TextCanonicalizer;
 import dev.phyce.naturalspeech.utils.TextUtil;
-import static dev.phyce.naturalspeech.utils.TextUtil.splitSentence;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.CheckForNull;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.callback.ClientThread;
@@ -36,18 +47,35 @@ public class TextToSpeech {
 	//<editor-fold desc="> Properties">
 	private static final String CONFIG_KEY_MODEL_CONFIG = "ttsConfig";
 	public static final String AUDIO_QUEUE_DIALOGUE = "&dialogue";
+	// examine text, the local player's thoughts, spoken with the local player's voice
+	public static final String AUDIO_QUEUE_THOUGHTS = "&thoughts";
+	// VM property to play somewhere other than the sound device: null, null-realtime, or wav:<path>
+	private static final String AUDIO_SINK_PROPERTY = "nsaudiosink";
 
 	private final ConfigManager configManager;
 	private final NaturalSpeechRuntimeConfig runtimeConfig;
 	private final ClientThread clientThread;
 	private final ModelRepository modelRepository;
 	private final NaturalSpeechConfig config;
-
-	private Map<String, String> shortenedPhrases;
+	private final AudioLinePool audioLinePool;
+	// every piper plays through the one mixer, so all voices share a single output line
+	private final AudioMixer audioMixer;
+	private final VoiceEffects voiceEffects = new VoiceEffects();
+	private final QueuedAudioBudget queuedAudioBudget;
+	private final SynthesisGuard synthesisGuard = new SynthesisGuard();
+
+	// recompiled off the client thread, swapped in whole
+	private volatile PhraseExpander shortenedPhrases = PhraseExpander.EMPTY;
+	private final AtomicInteger shortenedPhrasesVersion = new AtomicInteger(0);
+	private final ScheduledExecutorService executor;
 	@Getter
 	private ModelConfig modelConfig;
-	private final Map<String, Piper> pipers = new HashMap<>();
+	// changed on the client and swing threads, read by speak from both, see activeVoices
+	private final Map<String, Piper> pipers = new ConcurrentHashMap<>();
+	private final AdmissionController admissionController = new AdmissionController(pipers.values());
 	private final List<TextToSpeechListener> textToSpeechListeners = new ArrayList<>();
+	// audio queues speaking right now, oldest first. guarded by itself, speak is also called from the swing thread
+	private final Map<String, ActiveVoice> activeVoices = new LinkedHashMap<>();
 	@Getter
 	private boolean started = false;
 	private boolean isPiperUnquarantined = false;
@@ -59,14 +87,20 @@ public class TextToSpeech {
 		ClientThread clientThread,
 		ModelRepository modelRepository,
 		NaturalSpeechRuntimeConfig runtimeConfig,
-		NaturalSpeechConfig config) {
+		NaturalSpeechConfig config,
+		ScheduledExecutorService executor) {
 		this.runtimeConfig = runtimeConfig;
 		this.configManager = configManager;
 		this.clientThread = clientThread;
 		this.modelRepository = modelRepository;
 		this.config = config;
+		this.executor = executor;
+		this.audioLinePool = new AudioLinePool(executor, config.audioBufferMillis());
+		this.audioMixer = new AudioMixer(createAudioSink());
+		this.queuedAudioBudget = new QueuedAudioBudget(config.queuedAudioLimit() * 1024L * 1024L);
 
 		loadModelConfig();
+		loadAudioSettings();
 	}
 
 	// <editor-fold desc="> API">
@@ -78,6 +112,7 @@ public class TextToSpeech {
 
 		isPiperUnquarantined = false; // set to false for each launch, in case piper path/files were modified
 		started = false;
+		loadAudioSettings();
 		try {
 			for (ModelRepository.ModelURL modelURL : modelRepository.getModelURLS()) {
 				try {
@@ -112,13 +147,37 @@ public class TextToSpeech {
 			triggerOnPiperExit(piper);
 		}
 		pipers.clear();
+		audioMixer.stopAll();
+		audioLinePool.closeAll();
 		triggerOnStop();
 	}
 
-	public void speak(VoiceID voiceID, String text, int distance, String audioQueueName)
-		throws ModelLocalUnavailableException, PiperNotActiveException {
+	/**
+	 * Canonicalizes the text first, see {@link TextCanonicalizer}.
+	 */
+	public AdmissionController.Decision speak(
+		VoiceID voiceID,
+		String text,
+		int distance,
+		String audioQueueName,
+		SpeechPriority priority
+	) throws ModelLocalUnavailableException, PiperNotActiveException {
+		return speak(voiceID, TextCanonicalizer.canonicalize(text), distance, audioQueueName, priority);
+	}
+
+	/**
+	 * @return the admission decision, messages can be shortened or dropped when synthesis is over budget.
+	 */
+	public AdmissionController.Decision speak(
+		VoiceID voiceID,
+		TextCanonicalizer.CanonicalText canonicalText,
+		int distance,
+		String audioQueueName,
+		SpeechPriority priority
+	) throws ModelLocalUnavailableException, PiperNotActiveException {
 		assert distance >= 0;
 
+		String text = canonicalText.getText();
 		try {
 			if (!modelRepository.hasModelLocal(voiceID.modelName)) {
 				throw new ModelLocalUnavailableException(text, voiceID);
@@ -131,17 +190,72 @@ public class TextToSpeech {
 			// Piper should be guaranteed to be present due to checks above
 			Piper piper = pipers.get(voiceID.modelName);
 
-			List<String> fragments = splitSentence(text);
-			for (String sentence : fragments) {
-				piper.speak(sentence, voiceID, getVolumeWithDistance(distance), audioQueueName);
+			// dialogue is spoken as written, the guard is for chat and overhead spam
+			if (priority != SpeechPriority.HIGH) {
+				String guarded = synthesisGuard.guard(text, config.maxMessageLength(), config.overLengthPolicy());
+				if (guarded.length() != text.length()) {
+					SynthesisCostModel costModel = piper.getCostModel();
+					long avoided = costModel.predictMillis(text.length()) - costModel.predictMillis(guarded.length());
+					synthesisGuard.recordAvoided(avoided);
+					log.trace("Guarded message for {}, avoided ~{}ms of synthesis ({}ms total). Message:{}",
+						audioQueueName, avoided, synthesisGuard.getAvoidedMillis(), text);
+					text = guarded;
+				}
 			}
+
+			List<String> fragments = splitSentence(piper, text);
+			if (fragments.isEmpty()) return AdmissionController.Decision.ADMITTED;
+
+			int cost = 0;
+			for (String fragment : fragments) cost += fragment.length();
+
+			AdmissionController.Decision decision =
+				admissionController.admit(priority, cost, fragments.get(0).length());
+			switch (decision) {
+				case REJECTED:
+					return decision;
+				case DOWNGRADED:
+					fragments = fragments.subList(0, 1);
+					break;
+			}
+
+			if (!admitVoice(audioQueueName, distance, priority)) {
+				log.trace("Over the voice limit and {} is the farthest, skipping. Message:{}", audioQueueName, text);
+				return AdmissionController.Decision.REJECTED;
+			}
+
+			piper.speak(fragments, voiceID, getVolumeWithDistance(distance), audioQueueName, priority);
+			return decision;
 		} catch (IOException e) {
 			throw new RuntimeException("Error loading " + voiceID, e);
 		}
 	}
 
+	/**
+	 * Estimates how long until the first fragment of the text would start playing,
+	 * from the live task and audio queues and the model's fitted synthesis cost.
+	 *
+	 * @return estimated millis, -1 if the voice's model is not running.
+	 */
+	public long estimateTimeToPlaybackMillis(VoiceID voiceID, String text, String audioQueueName) {
+		Piper piper = pipers.get(voiceID.getModelName());
+		if (piper == null || piper.countAlive() == 0) return -1;
+
+		List<String> fragments = splitSentence(piper, text);
+		int firstFragmentLength = fragments.isEmpty()? 0: fragments.get(0).length();
+
+		long synthesized =
+			piper.estimateSynthesisWaitMillis() + piper.getCostModel().predictMillis(firstFragmentLength);
+		// plays once it's synthesized and the audio queued before it has finished playing
+		return Math.max(synthesized, piper.estimatePlaybackBacklogMillis(audioQueueName));
+	}
+
+	private List<String> splitSentence(Piper piper, String text) {
+		return config.latencyFirstFragments()? piper.splitLatencyFirst(text): TextUtil.splitSentence(text);
+	}
+
 	public String expandShortenedPhrases(String text) {
-		return TextUtil.expandShortenedPhrases(text, shortenedPhrases);
+		return shortenedPhrases.expand(text);
 	}
 
 	//</editor-fold>
@@ -176,35 +290,104 @@ public class TextToSpeech {
 		return scaledVolume;
 	}
 
+	/**
+	 * Enforces the voice limit. Over the limit, the farthest voice is stopped (the oldest on ties),
+	 * unless the new voice is the farthest, then the new voice is turned away.
+	 * HIGH priority voices are always admitted and never stopped.
+	 *
+	 * @return false if the new voice shouldn't speak
+	 */
+	private boolean admitVoice(String audioQueueName, int distance, SpeechPriority priority) {
+		synchronized (activeVoices) {
+			Iterator<Map.Entry<String, ActiveVoice>> iter = activeVoices.entrySet().iterator();
+			while (iter.hasNext()) {
+				if (!isAudioQueueActive(iter.next().getKey())) iter.remove();
+			}
+
+			ActiveVoice voice = activeVoices.get(audioQueueName);
+			if (voice != null) {
+				voice.distance = distance;
+				if (priority == SpeechPriority.HIGH) voice.priority = priority;
+				return true;
+			}
+
+			int maxVoices = config.maxVoices();
+			if (maxVoices > 0 && priority != SpeechPriority.HIGH && activeVoices.size() >= maxVoices) {
+				String farthest = null;
+				int farthestDistance = -1;
+				for (Map.Entry<String, ActiveVoice> entry : activeVoices.entrySet()) {
+					ActiveVoice active = entry.getValue();
+					if (active.priority == SpeechPriority.HIGH) continue;
+					if (active.distance > farthestDistance) {
+						farthest = entry.getKey();
+						farthestDistance = active.distance;
+					}
+				}
+
+				// ties keep the voice that's already talking
+				if (farthest == null || farthestDistance <= distance) return false;
+
+				log.trace("Over the voice limit of {}, stopping {} at distance {}", maxVoices, farthest, farthestDistance);
+				for (Piper piper : pipers.values()) piper.cancelAudioQueue(farthest);
+				activeVoices.remove(farthest);
+			}
+
+			activeVoices.put(audioQueueName, new ActiveVoice(distance, priority));
+			return true;
+		}
+	}
+
+	private boolean isAudioQueueActive(String audioQueueName) {
+		for (Piper piper : pipers.values()) {
+			if (piper.isAudioQueueActive(audioQueueName)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Re-applies distance fade to the audio queue while it's playing, the mixer ramps to the new volume.
+	 */
+	public void updateDistance(String audioQueueName, int distance) {
+		synchronized (activeVoices) {
+			ActiveVoice voice = activeVoices.get(audioQueueName);
+			if (voice != null) voice.distance = distance;
+		}
+
+		float volume = getVolumeWithDistance(distance);
+		for (Piper piper : pipers.values()) {
+			AudioQueue audioQueue = piper.getNamedAudioQueueMap().get(audioQueueName);
+			if (audioQueue != null && audioQueue.isPlaying()) audioQueue.updateVolume(volume);
+		}
+	}
+
 	public void clearAllAudioQueues() {
-		for (String modelName : pipers.keySet()) {
-			pipers.get(modelName).clearQueue();
+		for (Piper piper : pipers.values()) {
+			piper.clearQueue();
 		}
 	}
 
 	public void clearOtherPlayersAudioQueue(String username) {
-		for (String modelName : pipers.keySet()) {
-			Piper piper = pipers.get(modelName);
-			for (String audioQueueName : piper.getNamedAudioQueueMap().keySet()) {
-				if (audioQueueName.equals(AUDIO_QUEUE_DIALOGUE)) continue;
-				if (audioQueueName.equals(PluginHelper.getLocalPlayerUsername())) continue;
-				if (audioQueueName.equals(username)) continue;
-				piper.getNamedAudioQueueMap().get(audioQueueName).queue.clear();
-			}
+		for (Piper piper : pipers.values()) {
+			// idle queues are removed concurrently, iterate entries instead of looking names up again
+			piper.getNamedAudioQueueMap().forEach((audioQueueName, audioQueue) -> {
+				if (audioQueueName.equals(AUDIO_QUEUE_DIALOGUE)) return;
+				if (audioQueueName.equals(PluginHelper.getLocalPlayerUsername())) return;
+				if (audioQueueName.equals(username)) return;
+				audioQueue.clear();
+			});
 		}
 	}
 
 	public void clearPlayerAudioQueue(String username) {
-		for (String modelName : pipers.keySet()) {
-			Piper piper = pipers.get(modelName);
-			for (String audioQueueName : piper.getNamedAudioQueueMap().keySet()) {
+		for (Piper piper : pipers.values()) {
+			piper.getNamedAudioQueueMap().forEach((audioQueueName, audioQueue) -> {
 				// Don't clear dialogue
-				if (audioQueueName.equals(AUDIO_QUEUE_DIALOGUE)) continue;
+				if (audioQueueName.equals(AUDIO_QUEUE_DIALOGUE)) return;
 
 				if (audioQueueName.equals(username)) {
-					piper.getNamedAudioQueueMap().get(audioQueueName).queue.clear();
+					audioQueue.clear();
 				}
-			}
+			});
 		}
 	}
 	//</editor-fold>
@@ -243,6 +426,11 @@ public class TextToSpeech {
 		Piper piper = Piper.start(
 			modelLocal,
 			runtimeConfig.getPiperPath(),
+			getSharedMemoryDirectory(),
+			audioMixer,
+			config.trimSilence()? new SilenceTrimmer(config.silenceThreshold(), config.silencePadding()): null,
+			voiceEffects,
+			queuedAudioBudget,
 			modelConfig.getModelProcessCount(modelLocal.getModelName())
 		);
 
@@ -251,7 +439,13 @@ public class TextToSpeech {
 			new Piper.PiperProcessLifetimeListener() {
 				@Override
 				public void onPiperProcessExit(PiperProcess process) {
-					clientThread.invokeLater(() -> triggerOnPiperExit(piper));
+					onPiperProcessGone(piper);
+				}
+
+				@Override
+				public void onPiperProcessCrash(PiperProcess process) {
+					// processes that fail to warm up crash without ever starting
+					onPiperProcessGone(piper);
 				}
 			}
 		);
@@ -261,6 +455,54 @@ public class TextToSpeech {
 		triggerOnPiperStart(piper);
 	}
 
+	private void onPiperProcessGone(Piper piper) {
+		// degraded processes are replaced, the piper only exits when its last process does
+		clientThread.invokeLater(() -> {
+			if (piper.countAlive() == 0 && !piper.isWarmingUp()) triggerOnPiperExit(piper);
+		});
+	}
+
+	private AudioSink createAudioSink() {
+		String property = System.getProperty(AUDIO_SINK_PROPERTY);
+		AudioSink sink = new LineAudioSink(audioLinePool, AudioMixer.OUTPUT_FORMAT);
+		if (property == null) return sink;
+
+		if (property.equals("null")) {
+			sink = new NullAudioSink(AudioMixer.OUTPUT_FORMAT, false);
+		}
+		else if (property.equals("null-realtime")) {
+			sink = new NullAudioSink(AudioMixer.OUTPUT_FORMAT, true);
+		}
+		else if (property.startsWith("wav:")) {
+			Path path = Path.of(property.substring("wav:".length()));
+			try {
+				sink = new WavFileAudioSink(path, AudioMixer.OUTPUT_FORMAT);
+			} catch (IOException e) {
+				log.error("Failed to open {} for the WAV audio sink, using the sound device.", path, e);
+			}
+		}
+		else {
+			log.warn("Unknown {} VM property value {}, using the sound device.", AUDIO_SINK_PROPERTY, property);
+		}
+		log.info("{} VM property found, playing through {}", AUDIO_SINK_PROPERTY, sink);
+		return sink;
+	}
+
+	/**
+	 * @return tmpfs directory for the shared memory audio transport, null to pipe audio through stdout.
+	 */
+	@CheckForNull
+	private Path getSharedMemoryDirectory() {
+		if (!config.sharedMemoryTransport()) return null;
+
+		Path sharedMemory = Path.of("/dev/shm");
+		if (!OSValidator.IS_UNIX || !Files.isDirectory(sharedMemory) || !Files.isWritable(sharedMemory)) {
+			log.warn("Shared memory transport is enabled, but {} is not available. Using stdout.", sharedMemory);
+			return null;
+		}
+		return sharedMemory;
+	}
+
 	public void stopPiperForModel(ModelRepository.ModelLocal modelLocal)
 		throws PiperNotActiveException {
 		Piper piper;
@@ -275,9 +517,8 @@ public class TextToSpeech {
 
 	public int activePiperProcessCount() {
 		int result = 0;
-		for (String modelName : pipers.keySet()) {
-			Piper model = pipers.get(modelName);
-			result += model.countAlive();
+		for (Piper piper : pipers.values()) {
+			result += piper.countAlive();
 		}
 		return result;
 	}
@@ -288,7 +529,8 @@ public class TextToSpeech {
 
 	public boolean isModelActive(String modelName) {
 		Piper piper = pipers.get(modelName);
-		return piper != null && piper.countAlive() > 0;
+		// messages for a warming up model queue until it's ready
+		return piper != null && (piper.countAlive() > 0 || piper.isWarmingUp());
 	}
 
 	public void triggerOnPiperStart(Piper piper) {
@@ -326,15 +568,28 @@ public class TextToSpeech {
 		}
 	}
 
+	// In method so we can load again when user changes config
+	public void loadAudioSettings() {
+		audioLinePool.setBufferMillis(config.audioBufferMillis());
+		audioMixer.setCrossfadeMillis(config.crossfadeMillis());
+		voiceEffects.setNormalizeLoudness(config.normalizeLoudness());
+		voiceEffects.setInnerVoiceEffect(config.innerVoiceEffect());
+		queuedAudioBudget.setMaxBytes(config.queuedAudioLimit() * 1024L * 1024L);
+	}
+
 	// In method so we can load again when user changes config
 	public void loadShortenedPhrases() {
 		String phrases = config.shortenedPhrases();
-		shortenedPhrases = new HashMap<>();
-		String[] lines = phrases.split("\n");
-		for (String line : lines) {
-			String[] parts = line.split("=", 2);
-			if (parts.length == 2) shortenedPhrases.put(parts[0].trim(), parts[1].trim());
-		}
+		int version = shortenedPhrasesVersion.incrementAndGet();
+		// long phrase lists take a while to compile, messages keep using the previous phrases until it's done
+		executor.execute(() -> {
+			long start = System.currentTimeMillis();
+			PhraseExpander compiled = PhraseExpander.compile(phrases);
+			// a newer edit was queued behind this one
+			if (version != shortenedPhrasesVersion.get()) return;
+			shortenedPhrases = compiled;
+			log.debug("Compiled {} shortened phrases in {}ms", compiled.size(), System.currentTimeMillis() - start);
+		});
 	}
 
 	public void saveModelConfig() {
@@ -361,6 +616,16 @@ public class TextToSpeech {
 		textToSpeechListeners.remove(listener);
 	}
 
+	private static class ActiveVoice {
+		int distance;
+		SpeechPriority priority;
+
+		ActiveVoice(int distance, SpeechPriority priority) {
+			this.distance = distance;
+			this.priority = priority;
+		}
+	}
+
 	public interface TextToSpeechListener {
 		default void onPiperStart(Piper piper) {}
 
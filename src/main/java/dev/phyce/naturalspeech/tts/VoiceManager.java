@@ -1,7 +1,5 @@
 package dev.phyce.naturalspeech.tts;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
 import com.google.common.io.Resources;
 import com.google.gson.JsonSyntaxException;
 import com.google.inject.Inject;
@@ -18,7 +16,6 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 import javax.annotation.CheckForNull;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
@@ -37,32 +34,25 @@ public class VoiceManager {
 	private final VoiceConfig voiceConfig;
 	private final TextToSpeech textToSpeech;
 	private final ConfigManager configManager;
-	private final GenderedVoiceMap genderedVoiceMap;
-
-	private final Multimap<ModelRepository.ModelLocal, VoiceID> activeVoiceMap = HashMultimap.create();
+	// voices of the running models, for speakers without a configured voice
+	private final VoiceRegistry voiceRegistry = new VoiceRegistry();
 
 	@Inject
 	public VoiceManager(TextToSpeech textToSpeech, ConfigManager configManager) {
 		this.textToSpeech = textToSpeech;
 		this.configManager = configManager;
-		this.genderedVoiceMap = new GenderedVoiceMap();
 		voiceConfig = new VoiceConfig();
 
 		textToSpeech.addTextToSpeechListener(
 			new TextToSpeech.TextToSpeechListener() {
 				@Override
 				public void onPiperStart(Piper piper) {
-					ModelRepository.ModelLocal modelLocal = piper.getModelLocal();
-					genderedVoiceMap.addModel(modelLocal);
-					for (ModelRepository.VoiceMetadata voiceMetadata : modelLocal.getVoiceMetadata()) {
-						activeVoiceMap.put(modelLocal, voiceMetadata.toVoiceID());
-					}
+					voiceRegistry.addModel(piper.getModelLocal());
 				}
 
 				@Override
 				public void onPiperExit(Piper piper) {
-					genderedVoiceMap.removeModel(piper.getModelLocal());
-					activeVoiceMap.removeAll(piper.getModelLocal());
+					voiceRegistry.removeModel(piper.getModelLocal());
 				}
 			}
 		);
@@ -117,32 +107,17 @@ public class VoiceManager {
 
 	@CheckForNull
 	public VoiceID randomVoiceFromActiveModels(String standardized_username) {
-		int hashCode = standardized_username.hashCode();
-
-		long count = activeVoiceMap.values().size();
-		Optional<VoiceID> first = activeVoiceMap.values().stream().skip(Math.abs(hashCode) % count).findFirst();
-
-		return first.orElse(null);
+		return voiceRegistry.select(standardized_username);
 	}
 
 	@CheckForNull
 	private VoiceID randomGenderedVoice(String standardized_username, Gender gender) {
-		List<VoiceID> voiceIDs = genderedVoiceMap.find(gender);
-		if (voiceIDs == null || voiceIDs.isEmpty()) {
-			return null;
-		}
-		int hashCode = standardized_username.hashCode();
-		int voice = Math.abs(hashCode) % voiceIDs.size();
-
-		return voiceIDs.get(voice);
+		return voiceRegistry.select(standardized_username, gender);
 	}
 	// Ultimate fallback
 	@CheckForNull
 	public VoiceID randomVoice() {
-		long count = activeVoiceMap.values().size();
-		Optional<VoiceID> first = activeVoiceMap.values().stream().skip((int) (Math.random() * count)).findFirst();
-
-		return first.orElse(null);
+		return voiceRegistry.random();
 	}
 
 	//<editor-fold desc="> Get">
@@ -0,0 +1,171 @@
+package dev.phyce.naturalspeech.tts;
+
+import dev.phyce.naturalspeech.enums.Gender;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.annotation.CheckForNull;
+
+/**
+ * Voices of the running models, for picking a voice for speakers without one configured.
+ * Each model gets a slot holding its voices in arrays, by gender, so starting or stopping a model
+ * is a single slot write instead of touching every voice.
+ *
+ * A speaker's model is chosen by weighted rendezvous hashing, every active model is scored by hashing
+ * it with the speaker's name, weighted by how many voices it has, and the best score wins. Then the voice
+ * within the model is picked by hash. Only the speakers on a model that stops, or the share a new model wins,
+ * move to another voice, everyone else keeps theirs. Selection costs one score per active model,
+ * independent of how many voices there are.
+ *
+ * Reads are lock free on an immutable slot table, which is replaced on the rare model start or stop.
+ */
+public class VoiceRegistry {
+	private static final Gender[] GENDERS = Gender.values();
+
+	private volatile ModelSlot[] slots = new ModelSlot[0];
+
+	public synchronized void addModel(ModelRepository.ModelLocal modelLocal) {
+		ModelSlot slot = new ModelSlot(modelLocal);
+		ModelSlot[] current = slots;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].modelName.equals(slot.modelName)) {
+				// restarted, the voices are the same
+				ModelSlot[] replaced = current.clone();
+				replaced[i] = slot;
+				slots = replaced;
+				return;
+			}
+		}
+		ModelSlot[] added = Arrays.copyOf(current, current.length + 1);
+		added[current.length] = slot;
+		slots = added;
+	}
+
+	public synchronized void removeModel(ModelRepository.ModelLocal modelLocal) {
+		ModelSlot[] current = slots;
+		List<ModelSlot> remaining = new ArrayList<>(current.length);
+		for (ModelSlot slot : current) {
+			if (!slot.modelName.equals(modelLocal.getModelName())) remaining.add(slot);
+		}
+		slots = remaining.toArray(new ModelSlot[0]);
+	}
+
+	/**
+	 * @return the same voice for the same name, as long as its model stays active. null if no voices are active.
+	 */
+	@CheckForNull
+	public VoiceID select(String name) {
+		return select(name, null);
+	}
+
+	/**
+	 * @param gender null for any gender
+	 *
+	 * @return the same voice for the same name and gender, as long as its model stays active.
+	 * null if no active voice has the gender.
+	 */
+	@CheckForNull
+	public VoiceID select(String name, @CheckForNull Gender gender) {
+		long nameHash = fnv1a(name);
+
+		ModelSlot best = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (ModelSlot slot : slots) {
+			int weight = slot.voices(gender).length;
+			if (weight == 0) continue;
+
+			// uniform in (0, 1), stable for the name and model pair
+			double uniform = ((mix(nameHash ^ slot.modelHash) >>> 11) + 0.5) * 0x1.0p-53;
+			// weighted rendezvous, each model wins in proportion to its voice count
+			double score = weight / -Math.log(uniform);
+			if (score > bestScore) {
+				best = slot;
+				bestScore = score;
+			}
+		}
+		if (best == null) return null;
+
+		VoiceID[] voices = best.voices(gender);
+		return voices[(int) Long.remainderUnsigned(mix(nameHash + 0x9e3779b97f4a7c15L), voices.length)];
+	}
+
+	/**
+	 * @return any active voice, uniformly at random. null if no voices are active.
+	 */
+	@CheckForNull
+	public VoiceID random() {
+		ModelSlot[] current = slots;
+		int total = 0;
+		for (ModelSlot slot : current) total += slot.all.length;
+		if (total == 0) return null;
+
+		int index = ThreadLocalRandom.current().nextInt(total);
+		for (ModelSlot slot : current) {
+			if (index < slot.all.length) return slot.all[index];
+			index -= slot.all.length;
+		}
+		return null;
+	}
+
+	public int count() {
+		int total = 0;
+		for (ModelSlot slot : slots) total += slot.all.length;
+		return total;
+	}
+
+	// 64-bit FNV-1a, stable across sessions unlike identity hashes
+	private static long fnv1a(String text) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < text.length(); i++) {
+			hash ^= text.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	// splitmix64 finalizer, spreads every input bit over the output
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+
+	private static class ModelSlot {
+		final String modelName;
+		final long modelHash;
+		final VoiceID[] all;
+		// indexed by Gender.ordinal()
+		final VoiceID[][] byGender = new VoiceID[GENDERS.length][];
+
+		ModelSlot(ModelRepository.ModelLocal modelLocal) {
+			modelName = modelLocal.getModelName();
+			modelHash = mix(fnv1a(modelName));
+
+			ModelRepository.VoiceMetadata[] metadata = modelLocal.getVoiceMetadata();
+			all = new VoiceID[metadata.length];
+			int[] counts = new int[GENDERS.length];
+			for (int i = 0; i < metadata.length; i++) {
+				all[i] = metadata[i].toVoiceID();
+				counts[genderOf(metadata[i]).ordinal()]++;
+			}
+
+			for (Gender gender : GENDERS) byGender[gender.ordinal()] = new VoiceID[counts[gender.ordinal()]];
+			int[] filled = new int[GENDERS.length];
+			for (int i = 0; i < metadata.length; i++) {
+				int gender = genderOf(metadata[i]).ordinal();
+				byGender[gender][filled[gender]++] = all[i];
+			}
+		}
+
+		VoiceID[] voices(@CheckForNull Gender gender) {
+			return gender == null? all: byGender[gender.ordinal()];
+		}
+
+		// unknown genders are grouped with OTHER
+		private static Gender genderOf(ModelRepository.VoiceMetadata metadata) {
+			Gender gender = metadata.getGender();
+			return gender == Gender.MALE || gender == Gender.FEMALE? gender: Gender.OTHER;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package dev.phyce.naturalspeech.tts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.sound.sampled.AudioFormat;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streams the mixer's output into a WAV file as fast as it's mixed.
+ * The header's sizes are patched every time the mixer goes idle, so the file is valid between messages.
+ */
+@Slf4j
+public class WavFileAudioSink implements AudioSink {
+	private static final int HEADER_SIZE = 44;
+
+	private final AudioFormat format;
+	private final Path path;
+	private final FileChannel channel;
+	private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private long dataSize = 0;
+
+	// the mixer writes the same block array every time, wrapped once
+	private byte[] wrappedArray = null;
+	private ByteBuffer wrapped = null;
+
+	public WavFileAudioSink(Path path, AudioFormat format) throws IOException {
+		this.path = path;
+		this.format = format;
+		this.channel = FileChannel.open(path,
+			StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		writeHeader();
+	}
+
+	@Override
+	public AudioFormat getFormat() {
+		return format;
+	}
+
+	@Override
+	public void write(byte[] buffer, int offset, int length) throws IOException {
+		if (buffer != wrappedArray) {
+			wrappedArray = buffer;
+			wrapped = ByteBuffer.wrap(buffer);
+		}
+		wrapped.limit(offset + length).position(offset);
+		while (wrapped.hasRemaining()) {
+			channel.write(wrapped, HEADER_SIZE + dataSize + (wrapped.position() - offset));
+		}
+		dataSize += length;
+	}
+
+	@Override
+	public void idle() {
+		try {
+			writeHeader();
+		} catch (IOException e) {
+			log.error("Failed to update the WAV header of {}", path, e);
+		}
+	}
+
+	private void writeHeader() throws IOException {
+		int channels = format.getChannels();
+		int sampleRate = (int) format.getSampleRate();
+		int bits = format.getSampleSizeInBits();
+
+		header.clear();
+		header.put(new byte[] {'R', 'I', 'F', 'F'}).putInt((int) (36 + dataSize));
+		header.put(new byte[] {'W', 'A', 'V', 'E'});
+		header.put(new byte[] {'f', 'm', 't', ' '}).putInt(16);
+		header.putShort((short) 1) // PCM
+			.putShort((short) channels)
+			.putInt(sampleRate)
+			.putInt(sampleRate * format.getFrameSize())
+			.putShort((short) format.getFrameSize())
+			.putShort((short) bits);
+		header.put(new byte[] {'d', 'a', 't', 'a'}).putInt((int) dataSize);
+		header.flip();
+
+		while (header.hasRemaining()) channel.write(header, header.position());
+	}
+
+	@Override
+	public String toString() {
+		return "WAV sink " + path;
+	}
+}
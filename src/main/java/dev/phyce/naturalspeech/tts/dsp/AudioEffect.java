@@ -0,0 +1,10 @@
+package dev.phyce.naturalspeech.tts.dsp;
+
+/**
+ * Processes a mixer channel's samples in place, one block at a time.
+ * Samples are 16-bit values widened to int, so effects can overshoot and the mixer clamps once at the end.
+ * Effects keep their state between blocks and must not allocate in process, it runs on the mixer thread.
+ */
+public interface AudioEffect {
+	void process(int[] block, int length);
+}
@@ -0,0 +1,51 @@
+package dev.phyce.naturalspeech.tts.dsp;
+
+/**
+ * Second order IIR filter, coefficients from the RBJ audio EQ cookbook.
+ * Transposed direct form II, two floats of state.
+ */
+public class BiquadFilter implements AudioEffect {
+	// butterworth response, no resonant peak at the cutoff
+	private static final double Q = Math.sqrt(0.5);
+
+	private final float b0, b1, b2, a1, a2;
+	private float z1 = 0;
+	private float z2 = 0;
+
+	public static BiquadFilter lowPass(int sampleRate, double cutoffHz) {
+		double w0 = 2 * Math.PI * cutoffHz / sampleRate;
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2 * Q);
+		return new BiquadFilter((1 - cos) / 2, 1 - cos, (1 - cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+	}
+
+	public static BiquadFilter highPass(int sampleRate, double cutoffHz) {
+		double w0 = 2 * Math.PI * cutoffHz / sampleRate;
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2 * Q);
+		return new BiquadFilter((1 + cos) / 2, -(1 + cos), (1 + cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+	}
+
+	private BiquadFilter(double b0, double b1, double b2, double a0, double a1, double a2) {
+		this.b0 = (float) (b0 / a0);
+		this.b1 = (float) (b1 / a0);
+		this.b2 = (float) (b2 / a0);
+		this.a1 = (float) (a1 / a0);
+		this.a2 = (float) (a2 / a0);
+	}
+
+	@Override
+	public void process(int[] block, int length) {
+		float z1 = this.z1;
+		float z2 = this.z2;
+		for (int i = 0; i < length; i++) {
+			float x = block[i];
+			float y = b0 * x + z1;
+			z1 = b1 * x - a1 * y + z2;
+			z2 = b2 * x - a2 * y;
+			block[i] = Math.round(y);
+		}
+		this.z1 = z1;
+		this.z2 = z2;
+	}
+}
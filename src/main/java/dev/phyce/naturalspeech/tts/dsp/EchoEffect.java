@@ -0,0 +1,35 @@
+package dev.phyce.naturalspeech.tts.dsp;
+
+/**
+ * Feedback delay line, every repeat is quieter by the feedback factor.
+ */
+public class EchoEffect implements AudioEffect {
+	private final int[] delayLine;
+	private int position = 0;
+	// Q15 fixed point
+	private final int feedback;
+	private final int wet;
+
+	/**
+	 * @param feedback 0 to 1, how much of each repeat is fed back into the delay line
+	 * @param wet 0 to 1, how loud the echo is mixed in
+	 */
+	public EchoEffect(int sampleRate, int delayMillis, float feedback, float wet) {
+		this.delayLine = new int[Math.max(1, sampleRate * delayMillis / 1000)];
+		this.feedback = Math.round(feedback * (1 << 15));
+		this.wet = Math.round(wet * (1 << 15));
+	}
+
+	@Override
+	public void process(int[] block, int length) {
+		for (int i = 0; i < length; i++) {
+			int dry = block[i];
+			int delayed = delayLine[position];
+
+			block[i] = dry + (int) (((long) delayed * wet) >> 15);
+			delayLine[position] = dry + (int) (((long) delayed * feedback) >> 15);
+
+			if (++position == delayLine.length) position = 0;
+		}
+	}
+}
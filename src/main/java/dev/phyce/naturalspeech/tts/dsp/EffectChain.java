@@ -0,0 +1,17 @@
+package dev.phyce.naturalspeech.tts.dsp;
+
+/**
+ * Runs effects one after another on the same block.
+ */
+public class EffectChain implements AudioEffect {
+	private final AudioEffect[] effects;
+
+	public EffectChain(AudioEffect... effects) {
+		this.effects = effects;
+	}
+
+	@Override
+	public void process(int[] block, int length) {
+		for (AudioEffect effect : effects) effect.process(block, length);
+	}
+}
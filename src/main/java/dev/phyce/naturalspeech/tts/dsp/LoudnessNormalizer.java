@@ -0,0 +1,53 @@
+package dev.phyce.naturalspeech.tts.dsp;
+
+/**
+ * Evens out how loud different voices are. Tracks a voice's RMS level over a few hundred milliseconds
+ * and slowly steers its gain towards a target level. Quiet blocks (pauses) don't move the gain,
+ * so silence isn't pumped up.
+ */
+public class LoudnessNormalizer implements AudioEffect {
+	private static final double TIME_CONSTANT_MILLIS = 300;
+	private static final float MIN_GAIN = 0.25f;
+	private static final float MAX_GAIN = 4f;
+	// -45 dBFS, blocks quieter than this are pauses between words
+	private static final float GATE_RMS = 32768 * 0.0056f;
+
+	private final float targetRms;
+	private final double smoothingPerSample;
+	// mean square level, starts at the target so the first block isn't boosted or cut
+	private double meanSquare;
+	private float gain = 1;
+
+	/**
+	 * @param targetDecibels RMS level voices are steered to, in dBFS. ex: -20
+	 */
+	public LoudnessNormalizer(int sampleRate, float targetDecibels) {
+		this.targetRms = (float) (Math.pow(10, targetDecibels / 20) * 32768);
+		this.smoothingPerSample = Math.exp(-1000.0 / (TIME_CONSTANT_MILLIS * sampleRate));
+		this.meanSquare = (double) targetRms * targetRms;
+	}
+
+	@Override
+	public void process(int[] block, int length) {
+		if (length == 0) return;
+
+		double sum = 0;
+		for (int i = 0; i < length; i++) sum += (double) block[i] * block[i];
+		double blockMeanSquare = sum / length;
+
+		float startGain = gain;
+		if (blockMeanSquare > GATE_RMS * GATE_RMS) {
+			double smoothing = Math.pow(smoothingPerSample, length);
+			meanSquare = smoothing * meanSquare + (1 - smoothing) * blockMeanSquare;
+			gain = Math.max(MIN_GAIN, Math.min(MAX_GAIN, (float) (targetRms / Math.sqrt(meanSquare))));
+		}
+
+		// ramp from the last block's gain, so gain changes don't click
+		float step = (gain - startGain) / length;
+		float current = startGain;
+		for (int i = 0; i < length; i++) {
+			current += step;
+			block[i] = Math.round(block[i] * current);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package dev.phyce.naturalspeech.tts.dsp;
+
+import dev.phyce.naturalspeech.tts.TextToSpeech;
+import javax.annotation.CheckForNull;
+
+/**
+ * Builds the effect chain for a new mixer channel from the audio queue it plays.
+ * Every channel gets its own effect instances, effects are stateful.
+ */
+public class VoiceEffects {
+	private static final float NORMALIZE_TARGET_DECIBELS = -20;
+
+	private volatile boolean normalizeLoudness = false;
+	private volatile boolean innerVoiceEffect = false;
+
+	public void setNormalizeLoudness(boolean normalizeLoudness) {
+		this.normalizeLoudness = normalizeLoudness;
+	}
+
+	public void setInnerVoiceEffect(boolean innerVoiceEffect) {
+		this.innerVoiceEffect = innerVoiceEffect;
+	}
+
+	/**
+	 * @return null when the queue plays without effects
+	 */
+	@CheckForNull
+	public AudioEffect create(String audioQueueName, int sampleRate) {
+		boolean normalize = normalizeLoudness;
+		boolean innerVoice = innerVoiceEffect && TextToSpeech.AUDIO_QUEUE_THOUGHTS.equals(audioQueueName);
+		if (!normalize && !innerVoice) return null;
+
+		AudioEffect normalizer = normalize? new LoudnessNormalizer(sampleRate, NORMALIZE_TARGET_DECIBELS): null;
+		if (!innerVoice) return normalizer;
+
+		// thoughts: muffled band, with a short echo as if heard from inside the head
+		AudioEffect thoughts = new EffectChain(
+			BiquadFilter.highPass(sampleRate, 300),
+			BiquadFilter.lowPass(sampleRate, 3000),
+			new EchoEffect(sampleRate, 120, 0.3f, 0.35f)
+		);
+		return normalizer == null? thoughts: new EffectChain(normalizer, thoughts);
+	}
+}
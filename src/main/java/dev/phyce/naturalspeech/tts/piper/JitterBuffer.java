@@ -0,0 +1,59 @@
+package dev.phyce.naturalspeech.tts.piper;
+
+/**
+ * Decides when a message has buffered enough fragments to start playing.
+ * A process synthesizing slower than real time would run the queue dry between fragments and stutter,
+ * so playback waits until every remaining fragment is predicted to arrive before it's needed.
+ * Faster than real time, the first fragment starts playing right away. Thread-safe.
+ */
+public class JitterBuffer {
+	// used until a real-time factor is reported
+	private static final double DEFAULT_REAL_TIME_FACTOR = 1.0;
+	// headroom over the measured real-time factor, synthesis time jitters between requests
+	private static final double SAFETY_FACTOR = 1.25;
+	// roughly 15 characters spoken a second
+	private static final double DEFAULT_AUDIO_MS_PER_CHAR = 65;
+	private static final double SMOOTHING = 0.1;
+
+	private double audioMillisPerChar = DEFAULT_AUDIO_MS_PER_CHAR;
+
+	/**
+	 * Tracks how much audio a character of text turns into, to predict the length of fragments not yet synthesized.
+	 */
+	public synchronized void recordAudio(int characters, long audioMillis) {
+		if (characters <= 0) return;
+		audioMillisPerChar += SMOOTHING * ((double) audioMillis / characters - audioMillisPerChar);
+	}
+
+	public synchronized double getAudioMillisPerChar() {
+		return audioMillisPerChar;
+	}
+
+	/**
+	 * @param bufferedMillis audio queued and not yet played
+	 * @param pendingChars characters of each fragment still to synthesize, in playback order
+	 * @param from index of the first pending fragment
+	 * @param realTimeFactor synthesis time over audio time of the process synthesizing the fragments, NaN if unknown
+	 *
+	 * @return true if playing now is expected to finish without running out of audio.
+	 */
+	public synchronized boolean isReady(long bufferedMillis, int[] pendingChars, int from, double realTimeFactor) {
+		double factor = (Double.isNaN(realTimeFactor)? DEFAULT_REAL_TIME_FACTOR: realTimeFactor) * SAFETY_FACTOR;
+
+		// millis from now until the queue runs dry, and until the next fragment is synthesized
+		double playhead = bufferedMillis;
+		double synthesized = 0;
+		for (int i = from; i < pendingChars.length; i++) {
+			double audio = pendingChars[i] * audioMillisPerChar;
+			synthesized += audio * factor;
+			if (synthesized > playhead) return false;
+			playhead += audio;
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%.0f audio ms/char", audioMillisPerChar);
+	}
+}
@@ -0,0 +1,49 @@
+package dev.phyce.naturalspeech.tts.piper;
+
+import java.util.Arrays;
+
+/**
+ * Rolling window of the most recent latency samples, in milliseconds.
+ * Thread-safe, samples are recorded by the Piper task thread and read by the UI.
+ */
+public class LatencyStats {
+	private final long[] samples;
+	private final long[] sorted;
+	private int next = 0;
+	private int count = 0;
+
+	public LatencyStats(int windowSize) {
+		samples = new long[windowSize];
+		sorted = new long[windowSize];
+	}
+
+	public synchronized void record(long latencyMillis) {
+		samples[next] = latencyMillis;
+		next = (next + 1) % samples.length;
+		if (count < samples.length) count++;
+	}
+
+	public synchronized int count() {
+		return count;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 *
+	 * @return the nearest-rank percentile of the window, -1 if there are no samples yet.
+	 */
+	public synchronized long percentile(double percentile) {
+		if (count == 0) return -1;
+
+		System.arraycopy(samples, 0, sorted, 0, count);
+		Arrays.sort(sorted, 0, count);
+
+		int rank = (int) Math.ceil(percentile / 100.0 * count);
+		return sorted[Math.max(0, Math.min(count - 1, rank - 1))];
+	}
+
+	public synchronized void clear() {
+		next = 0;
+		count = 0;
+	}
+}
@@ -1,18 +1,35 @@
 package dev.phyce.naturalspeech.tts.piper;
 
+import dev.phyce.naturalspeech.enums.SpeechPriority;
+import dev.phyce.naturalspeech.tts.AudioMixer;
 import dev.phyce.naturalspeech.tts.AudioPlayer;
 import dev.phyce.naturalspeech.tts.AudioQueue;
 import dev.phyce.naturalspeech.tts.ModelRepository;
+import dev.phyce.naturalspeech.tts.PlaybackScheduler;
+import dev.phyce.naturalspeech.tts.QueuedAudioBudget;
+import dev.phyce.naturalspeech.tts.Resampler;
+import dev.phyce.naturalspeech.tts.SilenceTrimmer;
 import dev.phyce.naturalspeech.tts.VoiceID;
+import dev.phyce.naturalspeech.tts.dsp.VoiceEffects;
+import dev.phyce.naturalspeech.utils.TextUtil;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Value;
@@ -21,87 +38,246 @@ import lombok.extern.slf4j.Slf4j;
 // Renamed from TTSModel
 @Slf4j
 public class Piper {
+	private static final String WARM_UP_TEXT = "Hello.";
+	private static final String HEARTBEAT_TEXT = "Hi.";
+	private static final long HEARTBEAT_INTERVAL_MS = 30_000;
+	// a heartbeat may take this many times the predicted synthesis time, but never less than the minimum
+	private static final int HEARTBEAT_TIMEOUT_FACTOR = 3;
+	private static final long HEARTBEAT_MIN_TIMEOUT_MS = 2_000;
+	// p95 synthesis latency a process has to stay under, after enough samples
+	private static final long LATENCY_SLO_MS = 5_000;
+	private static final int LATENCY_SLO_MIN_SAMPLES = 10;
+	// fragment sizing for latency first splitting, in characters
+	private static final int FRAGMENT_MIN_SOFT_LIMIT = 10;
+	private static final int FRAGMENT_MAX_SOFT_LIMIT = 40;
+	private static final double FRAGMENT_MAX_GROWTH = 2;
+	// share of a fragment's playback the next fragment's synthesis may take, the rest is headroom
+	private static final double FRAGMENT_SYNTHESIS_SHARE = 0.8;
+
 	@Getter
-	private final Map<Long, PiperProcess> processMap = new HashMap<>();
+	private final Map<Long, PiperProcess> processMap = new ConcurrentHashMap<>();
 	@Getter
 	private final ConcurrentHashMap<String, AudioQueue> namedAudioQueueMap = new ConcurrentHashMap<>();
-	private final ConcurrentLinkedQueue<PiperTask> piperTaskQueue = new ConcurrentLinkedQueue<>();
+	// HIGH priority tasks (dialogue) jump ahead of queued chat, otherwise first in first out
+	private final PriorityBlockingQueue<PiperTask> piperTaskQueue = new PriorityBlockingQueue<>(16,
+		Comparator.comparing(PiperTask::getPriority).thenComparingLong(PiperTask::getSequence));
+	private final AtomicLong taskSequence = new AtomicLong(0);
+	// characters queued or being synthesized, used by TextToSpeech for admission control
+	private final AtomicInteger outstandingChars = new AtomicInteger(0);
+	@Getter
+	private final SynthesisCostModel costModel = new SynthesisCostModel();
+	// holds a message's first fragments back while synthesis is slower than real time
+	private final JitterBuffer jitterBuffer = new JitterBuffer();
+	// task being synthesized right now, for estimates
+	private volatile PiperTask currentTask = null;
+	private volatile long currentTaskStart = 0;
 	private final AudioPlayer audioPlayer;
+	private final PlaybackScheduler playbackScheduler;
+	// shared by every piper
+	private final QueuedAudioBudget queuedAudioBudget;
+	// model's sample rate to the mixer's
+	private final Resampler resampler;
+	// null leaves clips untrimmed
+	@CheckForNull
+	private final SilenceTrimmer silenceTrimmer;
 
 	@Getter
 	private final ModelRepository.ModelLocal modelLocal;
 	@Getter
 	private final Path piperPath;
+	// null pipes audio through stdout, see PiperProcess.start
+	@CheckForNull
+	private final Path outputDirectory;
 	private final Thread processPiperTaskThread;
-	private final Thread processAudioQueueThread;
 
-	private final List<PiperProcessLifetimeListener> piperProcessLifetimeListeners = new ArrayList<>();
+	// spawned and not yet warm, guarded by itself. Also guards processMap additions against stop()
+	private final Set<PiperProcess> warmingProcesses = new HashSet<>();
+	// guarded by warmingProcesses, no process may be added once stop() cleared everything
+	private boolean stopped = false;
+	// degraded processes with a replacement on the way
+	private final Set<PiperProcess> replacing = ConcurrentHashMap.newKeySet();
+	// warm replacements, swapped in by the processPiperTask thread
+	private final Queue<Replacement> readyReplacements = new ConcurrentLinkedQueue<>();
+
+	// listeners are triggered from the task thread and the warm-up threads
+	private final List<PiperProcessLifetimeListener> piperProcessLifetimeListeners = new CopyOnWriteArrayList<>();
 
 	/**
 	 * Create a piper and immediately start
 	 *
 	 * @throws IOException if piper fails to start an IOException will be thrown. (because stdin cannot be opened).
 	 */
-	public static Piper start(ModelRepository.ModelLocal modelLocal, Path piperPath, int instanceCount)
-		throws IOException {
-		return new Piper(modelLocal, piperPath, instanceCount);
+	public static Piper start(
+		ModelRepository.ModelLocal modelLocal,
+		Path piperPath,
+		@CheckForNull Path outputDirectory,
+		AudioMixer audioMixer,
+		@CheckForNull SilenceTrimmer silenceTrimmer,
+		VoiceEffects voiceEffects,
+		QueuedAudioBudget queuedAudioBudget,
+		int instanceCount
+	) throws IOException {
+		return new Piper(modelLocal, piperPath, outputDirectory, audioMixer, silenceTrimmer, voiceEffects,
+			queuedAudioBudget, instanceCount);
 	}
 
-	private Piper(ModelRepository.ModelLocal modelLocal, Path piperPath, int instanceCount) throws IOException {
+	private Piper(
+		ModelRepository.ModelLocal modelLocal,
+		Path piperPath,
+		@CheckForNull Path outputDirectory,
+		AudioMixer audioMixer,
+		@CheckForNull SilenceTrimmer silenceTrimmer,
+		VoiceEffects voiceEffects,
+		QueuedAudioBudget queuedAudioBudget,
+		int instanceCount
+	) throws IOException {
 		this.modelLocal = modelLocal;
+		this.queuedAudioBudget = queuedAudioBudget;
 		this.piperPath = piperPath;
-
-		audioPlayer = new AudioPlayer();
+		this.outputDirectory = outputDirectory;
+		this.silenceTrimmer = silenceTrimmer;
+
+		audioPlayer = new AudioPlayer(audioMixer);
+		playbackScheduler = new PlaybackScheduler(audioPlayer, voiceEffects);
+		resampler = new Resampler(modelLocal.getSampleRate(), (int) audioPlayer.getFormat().getSampleRate());
+		if (!resampler.isPassthrough()) {
+			log.info("{} outputs {}Hz, resampling to {}Hz", modelLocal.getModelName(), modelLocal.getSampleRate(),
+				(int) audioPlayer.getFormat().getSampleRate());
+		}
 
 		startMore(instanceCount);
 
 		processPiperTaskThread =
 			new Thread(this::processPiperTask, String.format("[%s] Piper::processPiperTask Thread", this));
 		processPiperTaskThread.start();
-
-		processAudioQueueThread =
-			new Thread(this::processAudioQueue, String.format("[%s] Piper::processAudioQueue Thread", this));
-		processAudioQueueThread.start();
 	}
 
+	/**
+	 * Spawns the processes right away, warming up happens in the background, see {@link #warmUpInBackground}.
+	 */
 	public void startMore(int instanceCount) throws IOException {
 		//Instance count should not be more than 2
+		List<PiperProcess> started = new ArrayList<>(instanceCount);
 		for (int index = 0; index < instanceCount; index++) {
-			PiperProcess process;
 			try {
-				process = PiperProcess.start(piperPath, modelLocal.getOnnx().toPath());
-				triggerOnPiperProcessStart(process);
+				started.add(PiperProcess.start(piperPath, modelLocal.getOnnx().toPath(), outputDirectory));
 			} catch (IOException e) {
 				// clean-up stray instances before throwing
-				processMap.forEach((pid, piperProcess) -> piperProcess.stop());
-				processMap.clear();
+				started.forEach(PiperProcess::stop);
 				throw e;
 			}
-			process.onExit().thenAccept(p -> {
-				triggerOnPiperProcessExit(p);
-			});
-			processMap.put(process.getPid(), process);
 		}
+		// in parallel, the models load at the same time
+		for (PiperProcess process : started) warmUpInBackground(process, null);
+	}
+
+	/**
+	 * Warms the process up on its own thread, start() is called from the client and swing threads,
+	 * which can't wait out a model load. The process only joins processMap and is reported as started
+	 * once it is warm, tasks queued in the meantime wait for it.
+	 *
+	 * @param replaces degraded process the new one replaces, the task thread swaps them once it is warm.
+	 *                 null if it replaces nothing.
+	 */
+	private void warmUpInBackground(PiperProcess process, @CheckForNull PiperProcess replaces) {
+		synchronized (warmingProcesses) {
+			if (stopped) {
+				process.stop();
+				return;
+			}
+			warmingProcesses.add(process);
+		}
+		new Thread(() -> {
+			boolean warm = warmUp(process);
+			synchronized (warmingProcesses) {
+				// stopped while warming up, stop() took care of the process
+				if (!warmingProcesses.remove(process)) return;
+				if (!warm) {
+					triggerOnPiperProcessCrash(process);
+					if (replaces != null) keepDegraded(replaces);
+					return;
+				}
+
+				if (replaces != null) {
+					readyReplacements.add(new Replacement(replaces, process));
+				}
+				else {
+					addProcess(process);
+				}
+			}
+			synchronized (piperTaskQueue) {piperTaskQueue.notify();}
+		}, String.format("[%s] Piper::warmUp Thread", process)).start();
+	}
+
+	private void addProcess(PiperProcess process) {
+		triggerOnPiperProcessStart(process);
+		process.onExit().thenAccept(p -> {
+			triggerOnPiperProcessExit(p);
+		});
+		processMap.put(process.getPid(), process);
+	}
+
+	/**
+	 * @return false if the process failed to warm up, it's stopped.
+	 */
+	private boolean warmUp(PiperProcess process) {
+		try {
+			process.warmUp(WARM_UP_TEXT, getWarmUpVoiceID());
+		} catch (IOException | InterruptedException e) {
+			log.error("{} failed to warm up, stopping.", process, e);
+			process.stop();
+			return false;
+		}
+		log.info("{} warmed up in {}ms", process, process.getWarmUpMillis());
+		return true;
+	}
+
+	/**
+	 * @return true while processes are still warming up, before they can take tasks.
+	 */
+	public boolean isWarmingUp() {
+		synchronized (warmingProcesses) {
+			return !warmingProcesses.isEmpty();
+		}
+	}
+
+	private int getWarmUpVoiceID() {
+		ModelRepository.VoiceMetadata[] voices = modelLocal.getVoiceMetadata();
+		// single speaker models do not take a speaker_id
+		return voices.length > 0? voices[0].getPiperVoiceID(): -1;
 	}
 
 	//Process message queue
 	public void processPiperTask() {
+		long lastHeartbeat = System.currentTimeMillis();
 		while (!processPiperTaskThread.isInterrupted()) {
-			if (piperTaskQueue.isEmpty()) {
+			if (!hasTaskReady()) {
 				synchronized (piperTaskQueue) {
 					try {
-						piperTaskQueue.wait();
+						// re-check under the lock so a notify from speak() or a warm-up can't slip in before the wait
+						if (!hasTaskReady()) piperTaskQueue.wait(HEARTBEAT_INTERVAL_MS);
 					} catch (InterruptedException e) {
 						return; // just exit on interrupt
 					}
 				}
+
+				removeIdleAudioQueues();
+				if (piperTaskQueue.isEmpty() && System.currentTimeMillis() - lastHeartbeat >= HEARTBEAT_INTERVAL_MS) {
+					heartbeat();
+					lastHeartbeat = System.currentTimeMillis();
+				}
+				// also woken up by a replacement finishing its warm-up
+				replaceDegradedProcesses();
 				continue; // double check emptiness after notify.
 			}
 
 			PiperTask task = piperTaskQueue.poll();
-
-			if (processMap.isEmpty()) {
-			}
+			// emptied by cancelAudioQueue or clearQueue since the check
+			if (task == null) continue;
+			currentTaskStart = System.currentTimeMillis();
+			currentTask = task;
+			// process that synthesized the task, its real-time factor sizes the prebuffer
+			PiperProcess producer = null;
 
 			// using iterator to loop, so if an invalid PiperProcess is found we can remove.
 			Iterator<Long> iter = processMap.keySet().iterator();
@@ -116,10 +292,13 @@ public class Piper {
 				}
 
 				if (!process.getPiperLocked().get()) {
-					byte[] audioClip;
+					ByteBuffer audioClip;
 					try {
 						triggerOnPiperProcessBusy(process);
+						long start = System.currentTimeMillis();
 						audioClip = process.generateAudio(task.getText(), task.getVoiceID().getPiperVoiceID());
+						costModel.record(task.getText().length(), System.currentTimeMillis() - start);
+						checkLatencySLO(process);
 						triggerOnPiperProcessDone(process);
 					} catch (IOException | InterruptedException e) {
 						// PiperProcess exited unexpectedly, remove the process
@@ -130,56 +309,196 @@ public class Piper {
 						iter.remove();
 						continue;
 					}
-					if (audioClip != null && audioClip.length > 0) {
-						AudioQueue audioQueue =
-							namedAudioQueueMap.computeIfAbsent(task.audioQueueName, audioQueueName -> new AudioQueue());
-						audioQueue.queue.add(new AudioQueue.AudioTask(audioClip, task.getVolume()));
-
-						synchronized (namedAudioQueueMap) {namedAudioQueueMap.notify();}
-
-						break;
+					producer = process;
+					// cancelled while it was being synthesized
+					if (task.getMessage().cancelled) break;
+
+					if (audioClip != null) audioClip = resampler.resample(trimSilence(task, audioClip));
+					// a fragment that is all silence ("...") trims down to nothing, it's done all the same
+					if (audioClip != null && audioClip.hasRemaining()) {
+						AudioQueue audioQueue = namedAudioQueueMap.computeIfAbsent(task.audioQueueName,
+							audioQueueName -> new AudioQueue(queuedAudioBudget));
+						jitterBuffer.recordAudio(task.getText().length(), audioPlayer.bytesToMillis(audioClip.remaining()));
+						audioQueue.add(new AudioQueue.AudioTask(
+							audioClip, task.getVolume(), task.getPriority(), System.nanoTime()));
 					}
+					break;
 				}
 			}
+			currentTask = null;
+			outstandingChars.addAndGet(-task.getText().length());
+
+			MessageStats message = task.getMessage();
+			if (--message.remainingFragments == 0 && silenceTrimmer != null) {
+				log.debug("Trimmed {}ms of silence from a {} fragment message to {}",
+					message.trimmedMillis, message.fragmentCount, task.getAudioQueueName());
+			}
+			startPlaybackWhenBuffered(task, producer);
+
+			removeIdleAudioQueues();
+			replaceDegradedProcesses();
 		}
 	}
 
-	public void processAudioQueue() {
-		while (!processAudioQueueThread.isInterrupted()) {
+	// tasks queued before any process is warm wait for one, instead of being dropped
+	private boolean hasTaskReady() {
+		return !piperTaskQueue.isEmpty() && (!processMap.isEmpty() || !isWarmingUp());
+	}
 
-			synchronized (namedAudioQueueMap) {
-				try {
-					namedAudioQueueMap.wait();
-				} catch (InterruptedException e) {
+	/**
+	 * Starts an idle audio queue once enough of the message is buffered to play through without a gap.
+	 * Already playing queues pull the new clip on their own.
+	 */
+	private void startPlaybackWhenBuffered(PiperTask task, @CheckForNull PiperProcess producer) {
+		AudioQueue audioQueue = namedAudioQueueMap.get(task.getAudioQueueName());
+		if (audioQueue == null || audioQueue.isEmpty()) return;
+
+		MessageStats message = task.getMessage();
+		// the rest of the message was dropped, nothing more is coming
+		boolean complete = message.remainingFragments == 0 || message.truncated;
+		if (!complete && !audioQueue.isPlaying()) {
+			long bufferedMillis = audioPlayer.bytesToMillis(audioQueue.getQueuedBytes());
+			double realTimeFactor = producer != null? producer.getRealTimeFactor(): Double.NaN;
+			int next = message.fragmentCount - message.remainingFragments;
+			if (!jitterBuffer.isReady(bufferedMillis, message.fragmentChars, next, realTimeFactor)) {
+				log.trace("Prebuffering {}, {}ms buffered at real-time factor {} ({})",
+					task.getAudioQueueName(), bufferedMillis, realTimeFactor, jitterBuffer);
+				return;
+			}
+		}
+		playbackScheduler.onClipReady(task.getAudioQueueName(), audioQueue);
+	}
+
+	/**
+	 * Queues are created per speaker, drop the ones that are done so they don't pile up over a session.
+	 * Only the processPiperTask thread adds clips and creates queues, so an idle empty queue can't be
+	 * handed a clip while it's being removed.
+	 */
+	private void removeIdleAudioQueues() {
+		namedAudioQueueMap.forEach((audioQueueName, audioQueue) -> {
+			if (audioQueue.isIdleAndEmpty() && namedAudioQueueMap.remove(audioQueueName, audioQueue)) {
+				queuedAudioBudget.unregister(audioQueue);
+			}
+		});
+	}
+
+	private ByteBuffer trimSilence(PiperTask task, ByteBuffer audioClip) {
+		if (silenceTrimmer == null) return audioClip;
+
+		// trimmed before resampling, at the model's rate
+		int sampleRate = modelLocal.getSampleRate();
+		ByteBuffer trimmed = silenceTrimmer.trim(audioClip, sampleRate);
+		MessageStats message = task.getMessage();
+		message.trimmedMillis += (audioClip.remaining() - trimmed.remaining()) / 2 * 1000L / sampleRate;
+		return trimmed;
+	}
+
+	/**
+	 * Sends a short request to every idle process, so a wedged process is detected (by timeout)
+	 * and latency stats stay current even when nobody is talking.
+	 * Only called from the processPiperTask thread. The timeout is a small multiple of the predicted time,
+	 * and a task arriving cuts the round short, so real work waits for one short heartbeat at most.
+	 */
+	private void heartbeat() {
+		long timeout = Math.max(HEARTBEAT_MIN_TIMEOUT_MS,
+			HEARTBEAT_TIMEOUT_FACTOR * costModel.predictMillis(HEARTBEAT_TEXT.length()));
+		Iterator<Long> iter = processMap.keySet().iterator();
+		while (iter.hasNext()) {
+			if (hasTaskReady()) return;
+			PiperProcess process = processMap.get(iter.next());
+			if (process == null) continue;
+
+			if (!process.isAlive()) {
+				iter.remove();
+				triggerOnPiperProcessCrash(process);
+				continue;
+			}
+
+			try {
+				triggerOnPiperProcessBusy(process);
+				// not recorded in the cost model, samples of a single length would take over its fit when idle
+				process.heartbeat(HEARTBEAT_TEXT, getWarmUpVoiceID(), timeout);
+				checkLatencySLO(process);
+				triggerOnPiperProcessDone(process);
+			} catch (IOException | InterruptedException e) {
+				log.error("{} failed heartbeat, stopping.", process, e);
+				triggerOnPiperProcessCrash(process);
+
+				process.stop();
+				iter.remove();
+				if (e instanceof InterruptedException) {
+					processPiperTaskThread.interrupt();
 					return;
 				}
 			}
+		}
+	}
+
+	private void checkLatencySLO(PiperProcess process) {
+		LatencyStats stats = process.getLatencyStats();
+		if (process.isDegraded() || stats.count() < LATENCY_SLO_MIN_SAMPLES) return;
+
+		long p95 = stats.percentile(95);
+		if (p95 > LATENCY_SLO_MS) {
+			log.warn("{} p95 latency {}ms is over the {}ms SLO, marking degraded.", process, p95, LATENCY_SLO_MS);
+			process.setDegraded(true);
+			triggerOnPiperProcessDegraded(process);
+		}
+	}
 
-			namedAudioQueueMap.forEach((queueName, audioQueue) -> {
-
-				if (!audioQueue.isPlaying() && !audioQueue.queue.isEmpty()) {
-					audioQueue.setPlaying(true);
-
-					// start a thread for each named audio queue
-					new Thread(() -> {
-						try {
-							AudioQueue.AudioTask task;
-							while ((task = audioQueue.queue.poll()) != null) {
-								audioPlayer.playClip(task.getAudioClip(), task.getVolume());
-							}
-						} finally {
-							audioQueue.setPlaying(false);
-						}
-					}, String.format("[%s] AudioPlayer Thread for %s", this, queueName)).start();
+	/**
+	 * Starts a replacement for each degraded process, warming up in the background while the degraded one keeps
+	 * taking tasks, then swaps in the replacements that are warm. Degraded processes are idle at this point
+	 * (only the processPiperTask thread hands out work), so they're already drained when they are stopped.
+	 * The model never has zero processes, and synthesis never waits for a replacement.
+	 */
+	private void replaceDegradedProcesses() {
+		Replacement ready;
+		while ((ready = readyReplacements.poll()) != null) {
+			synchronized (warmingProcesses) {
+				// stop() already stopped it, or is about to through readyReplacements
+				if (stopped) {
+					ready.replacement.stop();
+					return;
 				}
+				addProcess(ready.replacement);
+				processMap.remove(ready.degraded.getPid());
+			}
+			ready.degraded.stop();
+			replacing.remove(ready.degraded);
+			log.info("Replaced degraded {} with {}", ready.degraded, ready.replacement);
+		}
+
+		for (PiperProcess process : processMap.values()) {
+			if (!process.isDegraded() || !replacing.add(process)) continue;
 
-			});
+			try {
+				warmUpInBackground(
+					PiperProcess.start(piperPath, modelLocal.getOnnx().toPath(), outputDirectory), process);
+			} catch (IOException e) {
+				log.error("Failed to start a replacement for degraded {}, keeping it.", process, e);
+				keepDegraded(process);
+			}
 		}
 	}
 
+	private void keepDegraded(PiperProcess process) {
+		// reset the stats, so we don't retry on every task
+		process.getLatencyStats().clear();
+		process.setDegraded(false);
+		replacing.remove(process);
+	}
+
 	// Refactored to decouple from dependencies
-	public void speak(String text, VoiceID voiceID, float volume, String audioQueueName) throws IOException {
-		if (countAlive() == 0) {
+	// fragments of one message, queued in order
+	public void speak(
+		List<String> fragments,
+		VoiceID voiceID,
+		float volume,
+		String audioQueueName,
+		SpeechPriority priority
+	) throws IOException {
+		if (countAlive() == 0 && !isWarmingUp()) {
 			throw new IOException("No active PiperProcess instances running for " + voiceID.getModelName());
 		}
 
@@ -188,17 +507,135 @@ public class Piper {
 			clearQueue();
 		}
 
-		piperTaskQueue.add(new PiperTask(text, voiceID, volume, audioQueueName));
+		MessageStats message = new MessageStats(fragments);
+		for (String text : fragments) {
+			outstandingChars.addAndGet(text.length());
+			piperTaskQueue.add(new PiperTask(
+				text, voiceID, volume, audioQueueName, message, priority, taskSequence.getAndIncrement()));
+		}
 		synchronized (piperTaskQueue) {piperTaskQueue.notify();}
 	}
 
 	public void clearQueue() {
-		piperTaskQueue.clear();
+		PiperTask task;
+		while ((task = piperTaskQueue.poll()) != null) {
+			outstandingChars.addAndGet(-task.getText().length());
+			// a fragment of the message may be mid-synthesis, it shouldn't wait for the dropped ones
+			task.getMessage().truncated = true;
+		}
 		namedAudioQueueMap.values().forEach(audioQueue -> {
-			audioQueue.queue.clear();
+			audioQueue.clear();
 		});
 	}
 
+	/**
+	 * @return true while the audio queue has synthesis pending, clips queued, or a clip playing.
+	 */
+	public boolean isAudioQueueActive(String audioQueueName) {
+		PiperTask current = currentTask;
+		if (current != null && current.getAudioQueueName().equals(audioQueueName)) return true;
+
+		for (PiperTask task : piperTaskQueue) {
+			if (task.getAudioQueueName().equals(audioQueueName)) return true;
+		}
+
+		AudioQueue audioQueue = namedAudioQueueMap.get(audioQueueName);
+		return audioQueue != null && (audioQueue.isPlaying() || !audioQueue.isEmpty());
+	}
+
+	/**
+	 * Drops the audio queue's pending synthesis and queued clips, and fades out what's playing.
+	 */
+	public void cancelAudioQueue(String audioQueueName) {
+		Iterator<PiperTask> iter = piperTaskQueue.iterator();
+		while (iter.hasNext()) {
+			PiperTask task = iter.next();
+			if (!task.getAudioQueueName().equals(audioQueueName)) continue;
+
+			iter.remove();
+			task.getMessage().cancelled = true;
+			outstandingChars.addAndGet(-task.getText().length());
+		}
+
+		PiperTask current = currentTask;
+		if (current != null && current.getAudioQueueName().equals(audioQueueName)) {
+			current.getMessage().cancelled = true;
+		}
+
+		AudioQueue audioQueue = namedAudioQueueMap.get(audioQueueName);
+		if (audioQueue != null) {
+			audioQueue.clear();
+			audioQueue.cancelPlaying();
+		}
+	}
+
+	/**
+	 * @return smoothed real-time factor of the alive processes, NaN before any have reported one.
+	 */
+	public double getRealTimeFactor() {
+		double sum = 0;
+		int count = 0;
+		for (PiperProcess process : processMap.values()) {
+			double realTimeFactor = process.getRealTimeFactor();
+			if (!process.isAlive() || Double.isNaN(realTimeFactor)) continue;
+			sum += realTimeFactor;
+			count++;
+		}
+		return count > 0? sum / count: Double.NaN;
+	}
+
+	/**
+	 * Latency first splitting, sized from the measured real-time factor.
+	 * Each fragment grows by as much as it can while still being synthesized within the previous one's playback,
+	 * and the first is the shortest that covers the fixed cost of a request in that time.
+	 * Falls back to the usual fragments when synthesis can't keep up with playback anyway.
+	 */
+	public List<String> splitLatencyFirst(String text) {
+		double realTimeFactor = getRealTimeFactor();
+		double growth = Math.min(FRAGMENT_MAX_GROWTH, FRAGMENT_SYNTHESIS_SHARE / realTimeFactor);
+		// NaN fails the comparison too
+		if (!(growth > 1)) return TextUtil.splitSentence(text);
+
+		// intercept + realTimeFactor * growth * audio(first) <= audio(first)
+		double audioMillisPerChar = jitterBuffer.getAudioMillisPerChar();
+		double first = costModel.getInterceptMillis() / (audioMillisPerChar * (1 - realTimeFactor * growth));
+		int firstSoftLimit = (int) Math.max(FRAGMENT_MIN_SOFT_LIMIT, Math.min(FRAGMENT_MAX_SOFT_LIMIT, Math.ceil(first)));
+		return TextUtil.splitSentence(text, firstSoftLimit, growth, FRAGMENT_MAX_SOFT_LIMIT);
+	}
+
+	public int getOutstandingChars() {
+		return outstandingChars.get();
+	}
+
+	/**
+	 * Tasks are synthesized one at a time, so a new task waits for everything queued before it.
+	 *
+	 * @return predicted millis until the task queue is empty, using the fitted cost model.
+	 */
+	public long estimateSynthesisWaitMillis() {
+		long wait = 0;
+		for (PiperTask task : piperTaskQueue) {
+			wait += costModel.predictMillis(task.getText().length());
+		}
+
+		PiperTask current = currentTask;
+		if (current != null) {
+			long elapsed = System.currentTimeMillis() - currentTaskStart;
+			wait += Math.max(0, costModel.predictMillis(current.getText().length()) - elapsed);
+		}
+		return wait;
+	}
+
+	/**
+	 * @return millis of audio already waiting to play in the named audio queue.
+	 */
+	public long estimatePlaybackBacklogMillis(String audioQueueName) {
+		AudioQueue audioQueue = namedAudioQueueMap.get(audioQueueName);
+		if (audioQueue == null) return 0;
+
+		return audioPlayer.bytesToMillis(audioQueue.getQueuedBytes());
+	}
+
 	public int countAlive() {
 		int result = 0;
 		for (PiperProcess process : processMap.values()) {
@@ -210,15 +647,25 @@ public class Piper {
 	public void stop() {
 		audioPlayer.stop();
 
-		for (PiperProcess instance : processMap.values()) {
-			instance.stop();
+		synchronized (warmingProcesses) {
+			stopped = true;
+			warmingProcesses.forEach(PiperProcess::stop);
+			warmingProcesses.clear();
+
+			readyReplacements.forEach(ready -> ready.replacement.stop());
+			readyReplacements.clear();
+
+			for (PiperProcess instance : processMap.values()) {
+				instance.stop();
+			}
+			processMap.clear();
 		}
-		processMap.clear();
 
 		// clear task and audio queue on stop
 		clearQueue();
+		namedAudioQueueMap.values().forEach(queuedAudioBudget::unregister);
+		namedAudioQueueMap.clear();
 
-		processAudioQueueThread.interrupt();
 		processPiperTaskThread.interrupt();
 	}
 
@@ -251,6 +698,12 @@ public class Piper {
 		}
 	}
 
+	private void triggerOnPiperProcessDegraded(PiperProcess process) {
+		for (PiperProcessLifetimeListener listener : piperProcessLifetimeListeners) {
+			listener.onPiperProcessDegraded(process);
+		}
+	}
+
 	private void triggerOnPiperProcessStart(PiperProcess process) {
 		for (PiperProcessLifetimeListener listener : piperProcessLifetimeListeners) {
 			listener.onPiperProcessStart(process);
@@ -276,6 +729,34 @@ public class Piper {
 		VoiceID voiceID;
 		float volume;
 		String audioQueueName;
+		MessageStats message;
+		SpeechPriority priority;
+		long sequence;
+	}
+
+	@AllArgsConstructor
+	private static class Replacement {
+		final PiperProcess degraded;
+		final PiperProcess replacement;
+	}
+
+	// only touched by the processPiperTask thread, except for cancelling
+	private static class MessageStats {
+		final int fragmentCount;
+		// length of each fragment, for predicting how long the rest of the message takes
+		final int[] fragmentChars;
+		int remainingFragments;
+		long trimmedMillis = 0;
+		volatile boolean cancelled = false;
+		// fragments were dropped from the task queue without being synthesized
+		volatile boolean truncated = false;
+
+		MessageStats(List<String> fragments) {
+			this.fragmentCount = fragments.size();
+			this.fragmentChars = new int[fragmentCount];
+			for (int i = 0; i < fragmentCount; i++) fragmentChars[i] = fragments.get(i).length();
+			this.remainingFragments = fragmentCount;
+		}
 	}
 
 	public interface PiperProcessLifetimeListener {
@@ -290,5 +771,8 @@ public class Piper {
 		default void onPiperProcessDone(PiperProcess process) {}
 
 		default void onPiperProcessCrash(PiperProcess process) {}
+
+		// Missed the latency SLO, about to be drained and replaced
+		default void onPiperProcessDegraded(PiperProcess process) {}
 	}
 }
@@ -1,19 +1,27 @@
 package dev.phyce.naturalspeech.tts.piper;
 
-import dev.phyce.naturalspeech.utils.TextUtil;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 
@@ -21,19 +29,51 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class PiperProcess {
 	public static final Pattern piperLogMatcher = Pattern.compile("\\[.+] \\[piper] \\[info] (.+)");
+	private static final Pattern realTimeFactorMatcher = Pattern.compile("Real-time factor: ([0-9.eE+-]+)");
+	// weight of the newest real-time factor in the running average
+	private static final double REAL_TIME_FACTOR_SMOOTHING = 0.2;
+	private static final long WARM_UP_TIMEOUT_MS = 30_000;
+	// a fragment is at most 80 characters, anything longer than this is a wedged process
+	private static final long GENERATE_TIMEOUT_MS = 30_000;
+	private static final int LATENCY_WINDOW = 64;
+	private static final int WAV_HEADER_SIZE = 44;
 	@Getter
 	private final AtomicBoolean piperLocked;
 	private final ByteArrayOutputStream streamCapture = new ByteArrayOutputStream();
 	private final Path modelPath;
+	// when set, piper writes each clip to a WAV file here (tmpfs) which is memory mapped, instead of stdout
+	@CheckForNull
+	private final Path outputDirectory;
+	private long outputFileSequence = 0;
+	// files of requests that failed before piper was done with them, piper may still write them
+	private final List<Path> abandonedOutputFiles = new ArrayList<>();
 	private final Process process;
-	private final BufferedWriter processStdIn;
+	private final OutputStream processStdIn;
+	// only used by generateAudio, which piperLocked keeps to one request at a time
+	private final PiperRequestEncoder requestEncoder = new PiperRequestEncoder();
 	private final Thread processStdInThread;
 	private final Thread processStdErrThread;
+	// guarded by streamCapture, set by processStdErr when piper reports the request as finished
+	private boolean generationDone = false;
+	// guarded by streamCapture
+	private boolean stdErrClosed = false;
+	@Getter
+	private long warmUpMillis = -1;
+	@Getter
+	private final LatencyStats latencyStats = new LatencyStats(LATENCY_WINDOW);
+	// inference time over audio time as reported by piper, smoothed. NaN until the first request finishes
+	@Getter
+	private volatile double realTimeFactor = Double.NaN;
+	// Marked by Piper when the process misses its latency SLO, degraded processes are drained and replaced
+	@Getter
+	@Setter
+	private volatile boolean degraded = false;
 
-	private PiperProcess(Path piperPath, Path modelPath) throws IOException {
+	private PiperProcess(Path piperPath, Path modelPath, @CheckForNull Path outputDirectory) throws IOException {
 		piperLocked = new AtomicBoolean(false);
 		piperLocked.set(false);
 		this.modelPath = modelPath;
+		this.outputDirectory = outputDirectory;
 
 		ProcessBuilder processBuilder = new ProcessBuilder(
 			piperPath.toString(),
@@ -44,7 +84,7 @@ public class PiperProcess {
 
 		process = processBuilder.start();
 
-		processStdIn = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+		processStdIn = process.getOutputStream();
 
 		processStdInThread =
 			new Thread(this::processStdIn, String.format("[%s] PiperProcess::processStdIn Thread", this));
@@ -62,8 +102,13 @@ public class PiperProcess {
 		else {return String.format("pid:dead model:%s", modelPath.getFileName());}
 	}
 
-	public static PiperProcess start(Path piperPath, Path modelPath) throws IOException {
-		return new PiperProcess(piperPath, modelPath);
+	/**
+	 * @param outputDirectory null to pipe audio through stdout,
+	 *                        otherwise a tmpfs directory (/dev/shm) for the shared memory transport.
+	 */
+	public static PiperProcess start(Path piperPath, Path modelPath, @CheckForNull Path outputDirectory)
+		throws IOException {
+		return new PiperProcess(piperPath, modelPath, outputDirectory);
 	}
 
 	public void stop() {
@@ -79,7 +124,17 @@ public class PiperProcess {
 			}
 			process.destroy();
 		}
+		if (outputDirectory != null) onExit().thenRun(this::deleteOutputFiles);
+	}
 
+	// nothing writes them once the process is gone, and tmpfs is memory
+	private void deleteOutputFiles() {
+		try (DirectoryStream<Path> files =
+				 Files.newDirectoryStream(outputDirectory, String.format("naturalspeech-%d-*.wav", getPid()))) {
+			for (Path file : files) Files.deleteIfExists(file);
+		} catch (IOException e) {
+			log.error("{} failed deleting its output files in {}", this, outputDirectory, e);
+		}
 	}
 
 	//Capture audio stream
@@ -102,7 +157,9 @@ public class PiperProcess {
 			String line;
 			while (!processStdErrThread.isInterrupted() && (line = reader.readLine()) != null) {
 				if (line.endsWith(" sec)")) {
+					recordRealTimeFactor(line);
 					synchronized (streamCapture) {
+						generationDone = true;
 						streamCapture.notify();
 					}
 				}
@@ -111,39 +168,158 @@ public class PiperProcess {
 		} catch (IOException e) {
 			log.error("{}: readStdErr threw exception", this, e);
 		}
+
+		// stderr closed, the process is gone. Wake up any generateAudio still waiting on it.
+		synchronized (streamCapture) {
+			stdErrClosed = true;
+			streamCapture.notify();
+		}
+	}
+
+	private void recordRealTimeFactor(String line) {
+		Matcher match = realTimeFactorMatcher.matcher(line);
+		if (!match.find()) return;
+
+		double sample;
+		try {
+			sample = Double.parseDouble(match.group(1));
+		} catch (NumberFormatException e) {
+			return;
+		}
+		// only written by the stderr thread
+		double previous = realTimeFactor;
+		realTimeFactor = Double.isNaN(previous)? sample:
+			previous + REAL_TIME_FACTOR_SMOOTHING * (sample - previous);
+	}
+
+	/**
+	 * Runs a throwaway synthesis, ONNX sessions and espeak data are initialized lazily by piper,
+	 * so the first real request would otherwise pay for it.
+	 */
+	public void warmUp(String text, int piperVoiceID) throws IOException, InterruptedException {
+		long start = System.currentTimeMillis();
+		generateAudio(text, piperVoiceID, Float.NaN, WARM_UP_TIMEOUT_MS);
+		warmUpMillis = System.currentTimeMillis() - start;
+	}
+
+	/**
+	 * Short request with its own timeout, so a wedged process fails it quickly instead of after GENERATE_TIMEOUT_MS.
+	 */
+	public void heartbeat(String text, int piperVoiceID, long timeoutMillis) throws IOException, InterruptedException {
+		long start = System.currentTimeMillis();
+		generateAudio(text, piperVoiceID, Float.NaN, timeoutMillis);
+		latencyStats.record(System.currentTimeMillis() - start);
 	}
 
 	// refactor: inlined the speak(TTSItem) method into one generateAudio function
-	public byte[] generateAudio(String text, int piperVoiceID) throws IOException, InterruptedException {
+	public ByteBuffer generateAudio(String text, int piperVoiceID) throws IOException, InterruptedException {
+		return generateAudio(text, piperVoiceID, Float.NaN);
+	}
+
+	/**
+	 * @param lengthScale speaking time multiplier, slower above 1. NaN for the model's default.
+	 */
+	public ByteBuffer generateAudio(String text, int piperVoiceID, float lengthScale)
+		throws IOException, InterruptedException {
+		long start = System.currentTimeMillis();
+		ByteBuffer audioClip = generateAudio(text, piperVoiceID, lengthScale, GENERATE_TIMEOUT_MS);
+		latencyStats.record(System.currentTimeMillis() - start);
+		return audioClip;
+	}
+
+	/**
+	 * @param timeoutMillis 0 waits indefinitely
+	 *
+	 * @throws IOException if the process exits or the timeout elapses before the audio is generated.
+	 */
+	private ByteBuffer generateAudio(String text, int piperVoiceID, float lengthScale, long timeoutMillis)
+		throws IOException, InterruptedException {
 		piperLocked.set(true);
-		byte[] audioClip;
+		ByteBuffer audioClip = null;
+		Path outputFile = null;
+		boolean generated = false;
 		try {
-			byte[] result = null;
-			boolean valid = false;
-
 			synchronized (streamCapture) {
 				streamCapture.reset();
+				generationDone = false;
 			}
 
-			processStdIn.write(TextUtil.generateJson(text, piperVoiceID));
-			processStdIn.newLine();
-			processStdIn.flush();
+			if (outputDirectory != null) {
+				outputFile = outputDirectory.resolve(
+					String.format("naturalspeech-%d-%d.wav", getPid(), outputFileSequence++));
+			}
+			requestEncoder.encode(text, piperVoiceID, lengthScale, outputFile != null? outputFile.toString(): null)
+				.writeTo(processStdIn);
 
+			long deadline = System.currentTimeMillis() + timeoutMillis;
 			synchronized (streamCapture) {
-				streamCapture.wait();
+				// piper may finish before we start waiting, generationDone catches that notify
+				while (!generationDone) {
+					if (stdErrClosed || !process.isAlive()) {
+						throw new IOException(String.format("%s exited while generating audio", this));
+					}
 
-				if (!valid) {
-					result = streamCapture.toByteArray();
+					long remaining = timeoutMillis == 0 ? 0 : deadline - System.currentTimeMillis();
+					if (timeoutMillis != 0 && remaining <= 0) {
+						throw new IOException(String.format("%s timed out generating audio", this));
+					}
+					streamCapture.wait(remaining);
+				}
+				generated = true;
+
+				long transportStart = System.nanoTime();
+				if (outputFile == null) {
+					audioClip = ByteBuffer.wrap(streamCapture.toByteArray());
+					log.trace("{} piped {} bytes in {}us", this, audioClip.remaining(),
+						(System.nanoTime() - transportStart) / 1000);
 				}
 			}
 
-			audioClip = result;
+			if (outputFile != null) {
+				// piper answers requests in order, so it's done writing the abandoned ones too
+				for (Path abandoned : abandonedOutputFiles) Files.deleteIfExists(abandoned);
+				abandonedOutputFiles.clear();
+
+				long transportStart = System.nanoTime();
+				audioClip = mapWavFile(outputFile);
+				log.trace("{} mapped {} bytes in {}us", this, audioClip.remaining(),
+					(System.nanoTime() - transportStart) / 1000);
+			}
 		} finally {
+			if (outputFile != null) {
+				// the mapping stays valid after the file is unlinked
+				Files.deleteIfExists(outputFile);
+				// timed out or interrupted, piper writes the file later, it's deleted after the next request
+				if (!generated) abandonedOutputFiles.add(outputFile);
+			}
 			piperLocked.set(false);
 		}
 		return audioClip;
 	}
 
+	/**
+	 * piper logs the real-time factor once the WAV file is closed, so it's complete by the time this is called.
+	 *
+	 * @return the PCM data chunk of the WAV file, memory mapped.
+	 */
+	private static ByteBuffer mapWavFile(Path wavFile) throws IOException {
+		try (FileChannel channel = FileChannel.open(wavFile, StandardOpenOption.READ)) {
+			// piper writes the canonical 44 byte header, with the data size, before the samples
+			ByteBuffer header = ByteBuffer.allocate(WAV_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) <= 0) throw new IOException("Incomplete WAV file " + wavFile);
+			}
+			if (header.getInt(36) != 0x61746164) { // "data"
+				throw new IOException("Unexpected WAV header in " + wavFile);
+			}
+
+			long expectedSize = WAV_HEADER_SIZE + Integer.toUnsignedLong(header.getInt(40));
+			if (channel.size() < expectedSize) throw new IOException("Incomplete WAV file " + wavFile);
+
+			return channel.map(FileChannel.MapMode.READ_ONLY, WAV_HEADER_SIZE, expectedSize - WAV_HEADER_SIZE);
+		}
+	}
+
 	public boolean isAlive() {
 		return process.isAlive();
 	}
@@ -0,0 +1,163 @@
+package dev.phyce.naturalspeech.tts.piper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.annotation.CheckForNull;
+
+/**
+ * Encodes piper's --json-input requests, one JSON object per line, as UTF-8 straight into a reused byte buffer.
+ * Doesn't depend on the platform charset, and allocates nothing once the buffer has grown to fit the longest request.
+ * Not thread-safe, each PiperProcess owns one and only writes one request at a time.
+ */
+public class PiperRequestEncoder {
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+	// written with 3 decimals, length_scale doesn't need more
+	private static final int DECIMAL_SCALE = 1000;
+
+	private byte[] buffer = new byte[256];
+	private int length = 0;
+
+	/**
+	 * @param speakerId piper voice id, -1 for single speaker models which don't take one
+	 * @param lengthScale speaking time multiplier (slower above 1), NaN for the model's default
+	 * @param outputFile piper writes a WAV file here instead of stdout, null for stdout
+	 */
+	public PiperRequestEncoder encode(String text, int speakerId, float lengthScale, @CheckForNull String outputFile) {
+		length = 0;
+		writeAscii("{\"text\":");
+		writeString(text);
+		if (speakerId != -1) {
+			writeAscii(",\"speaker_id\":");
+			writeLong(speakerId);
+		}
+		if (!Float.isNaN(lengthScale)) {
+			writeAscii(",\"length_scale\":");
+			writeDecimal(lengthScale);
+		}
+		if (outputFile != null) {
+			writeAscii(",\"output_file\":");
+			writeString(outputFile);
+		}
+		writeAscii("}\n");
+		return this;
+	}
+
+	/**
+	 * Writes the encoded request and flushes it to piper.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(buffer, 0, length);
+		out.flush();
+	}
+
+	private void writeString(String text) {
+		// worst case is a six byte escape per char
+		ensureCapacity(text.length() * 6 + 2);
+		buffer[length++] = '"';
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				if (c >= 0x20 && c != '"' && c != '\\') {
+					buffer[length++] = (byte) c;
+				}
+				else {
+					writeEscape(c);
+				}
+			}
+			else if (c < 0x800) {
+				buffer[length++] = (byte) (0xc0 | c >> 6);
+				buffer[length++] = (byte) (0x80 | c & 0x3f);
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < text.length() &&
+				Character.isLowSurrogate(text.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, text.charAt(++i));
+				buffer[length++] = (byte) (0xf0 | codePoint >> 18);
+				buffer[length++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+				buffer[length++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+				buffer[length++] = (byte) (0x80 | codePoint & 0x3f);
+			}
+			else if (Character.isSurrogate(c)) {
+				// unpaired, not encodable, same replacement as String.getBytes
+				buffer[length++] = '?';
+			}
+			else {
+				buffer[length++] = (byte) (0xe0 | c >> 12);
+				buffer[length++] = (byte) (0x80 | c >> 6 & 0x3f);
+				buffer[length++] = (byte) (0x80 | c & 0x3f);
+			}
+		}
+		buffer[length++] = '"';
+	}
+
+	private void writeEscape(char c) {
+		buffer[length++] = '\\';
+		switch (c) {
+			case '"': buffer[length++] = '"'; break;
+			case '\\': buffer[length++] = '\\'; break;
+			case '\b': buffer[length++] = 'b'; break;
+			case '\f': buffer[length++] = 'f'; break;
+			case '\n': buffer[length++] = 'n'; break;
+			case '\r': buffer[length++] = 'r'; break;
+			case '\t': buffer[length++] = 't'; break;
+			default:
+				// every other control character
+				buffer[length++] = 'u';
+				buffer[length++] = '0';
+				buffer[length++] = '0';
+				buffer[length++] = HEX[c >> 4];
+				buffer[length++] = HEX[c & 0xf];
+		}
+	}
+
+	private void writeAscii(String ascii) {
+		ensureCapacity(ascii.length());
+		for (int i = 0; i < ascii.length(); i++) buffer[length++] = (byte) ascii.charAt(i);
+	}
+
+	private void writeLong(long value) {
+		ensureCapacity(20);
+		if (value < 0) {
+			buffer[length++] = '-';
+			value = -value;
+		}
+		int start = length;
+		do {
+			buffer[length++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+		// digits went in backwards
+		for (int i = start, j = length - 1; i < j; i++, j--) {
+			byte digit = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = digit;
+		}
+	}
+
+	private void writeDecimal(float value) {
+		long scaled = Math.round((double) value * DECIMAL_SCALE);
+		ensureCapacity(32);
+		if (scaled < 0) {
+			buffer[length++] = '-';
+			scaled = -scaled;
+		}
+		writeLong(scaled / DECIMAL_SCALE);
+		buffer[length++] = '.';
+		long fraction = scaled % DECIMAL_SCALE;
+		for (int unit = DECIMAL_SCALE / 10; unit > 0; unit /= 10) {
+			buffer[length++] = (byte) ('0' + fraction / unit % 10);
+		}
+	}
+
+	private void ensureCapacity(int extra) {
+		if (length + extra > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return new String(buffer, 0, length, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,63 @@
+package dev.phyce.naturalspeech.tts.piper;
+
+/**
+ * Predicts how long a model takes to synthesize a piece of text, millis = intercept + slope * characters.
+ * Fitted online with least squares over measured synthesis times, older samples decay
+ * so the fit follows the machine's current load. Thread-safe.
+ */
+public class SynthesisCostModel {
+	// used until there are enough samples to fit
+	private static final double DEFAULT_INTERCEPT_MS = 150;
+	private static final double DEFAULT_MS_PER_CHAR = 10;
+	private static final double DECAY = 0.98;
+	private static final double MIN_SAMPLES = 5;
+
+	// decayed sums for least squares
+	private double n = 0;
+	private double sumX = 0;
+	private double sumY = 0;
+	private double sumXX = 0;
+	private double sumXY = 0;
+
+	private double intercept = DEFAULT_INTERCEPT_MS;
+	private double slope = DEFAULT_MS_PER_CHAR;
+
+	public synchronized void record(int characters, long millis) {
+		n = n * DECAY + 1;
+		sumX = sumX * DECAY + characters;
+		sumY = sumY * DECAY + millis;
+		sumXX = sumXX * DECAY + (double) characters * characters;
+		sumXY = sumXY * DECAY + (double) characters * millis;
+
+		if (n < MIN_SAMPLES) return;
+
+		double variance = n * sumXX - sumX * sumX;
+		if (variance <= 0) {
+			// every sample had the same length, only the average is known
+			slope = DEFAULT_MS_PER_CHAR;
+			intercept = Math.max(0, (sumY - slope * sumX) / n);
+			return;
+		}
+
+		double fittedSlope = (n * sumXY - sumX * sumY) / variance;
+		// noise can fit a negative slope, longer text is never cheaper
+		slope = Math.max(0, fittedSlope);
+		intercept = Math.max(0, (sumY - slope * sumX) / n);
+	}
+
+	/**
+	 * @return the fixed cost of a request, regardless of its length.
+	 */
+	public synchronized double getInterceptMillis() {
+		return intercept;
+	}
+
+	public synchronized long predictMillis(int characters) {
+		return Math.round(intercept + slope * characters);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%.0fms + %.1fms/char", intercept, slope);
+	}
+}
@@ -1,5 +1,6 @@
 package dev.phyce.naturalspeech.ui.panels;
 
+import dev.phyce.naturalspeech.tts.piper.LatencyStats;
 import dev.phyce.naturalspeech.tts.piper.Piper;
 import dev.phyce.naturalspeech.tts.piper.PiperProcess;
 import java.awt.BorderLayout;
@@ -8,6 +9,7 @@ import java.util.HashMap;
 import java.util.Map;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.ui.DynamicGridLayout;
 import net.runelite.client.ui.FontManager;
@@ -37,24 +39,34 @@ public class PiperListItem extends JPanel {
 		// listener should not leak, do not need to call removePiperListener
 		// when piper is removed in TextToSpeech this JPanel is removed by MainSettingsPanel
 		// So the both will be garbage collected.
-		ItemPiperProcessLifeTimeListener listener = new ItemPiperProcessLifeTimeListener(piper);
+		ItemPiperProcessLifeTimeListener listener = new ItemPiperProcessLifeTimeListener();
 		piper.addPiperListener(listener);
+		// after adding the listener, processes still warming up are reported when they start
+		piper.getProcessMap().forEach((pid, process) -> {
+			SwingUtilities.invokeLater(() -> listener.AddProcess(process));
+		});
 
 	}
 
+	private static String processLabelText(PiperProcess process) {
+		LatencyStats stats = process.getLatencyStats();
+		if (stats.count() == 0) return process.toString();
+
+		return String.format("%s p50:%dms p95:%dms%s", process,
+			stats.percentile(50), stats.percentile(95), process.isDegraded()? " degraded": "");
+	}
+
+	// piper calls the listener from its task and warm-up threads, every change is made on the swing thread
 	private class ItemPiperProcessLifeTimeListener implements Piper.PiperProcessLifetimeListener {
 
+		// only touched on the swing thread
 		public final Map<PiperProcess, JLabel> labelMap = new HashMap<>();
 
-		public ItemPiperProcessLifeTimeListener(Piper piper) {
-			piper.getProcessMap().forEach((pid, process) -> {
-				AddProcess(process);
-			});
-		}
-
 		public void AddProcess(PiperProcess process) {
+			// a process that warms up while the listener is being added is seen twice
+			if (labelMap.containsKey(process)) return;
 			log.debug("Labeling process {}", process);
-			JLabel processLabel = new JLabel(process.toString());
+			JLabel processLabel = new JLabel(processLabelText(process));
 			labelMap.put(process, processLabel);
 			processListPanel.add(processLabel);
 			processListPanel.revalidate();
@@ -63,20 +75,39 @@ public class PiperListItem extends JPanel {
 		private void RemoveProcess(PiperProcess process) {
 			log.debug("Removing label for process {}", process);
 			JLabel label = labelMap.remove(process);
+			if (label == null) return;
 			processListPanel.remove(label);
 			processListPanel.revalidate();
 		}
 
 		@Override
 		public void onPiperProcessBusy(PiperProcess process) {
-			JLabel label = labelMap.get(process);
-			label.setForeground(Color.GREEN);
+			SwingUtilities.invokeLater(() -> {
+				JLabel label = labelMap.get(process);
+				if (label == null) return;
+				label.setForeground(Color.GREEN);
+			});
 		}
 
 		@Override
 		public void onPiperProcessDone(PiperProcess process) {
-			JLabel label = labelMap.get(process);
-			label.setForeground(null);
+			SwingUtilities.invokeLater(() -> {
+				JLabel label = labelMap.get(process);
+				if (label == null) return;
+				label.setForeground(null);
+				label.setText(processLabelText(process));
+			});
+		}
+
+		@Override
+		public void onPiperProcessDegraded(PiperProcess process) {
+			SwingUtilities.invokeLater(() -> {
+				JLabel label = labelMap.get(process);
+				if (label == null) return;
+				label.setText(processLabelText(process));
+				label.setForeground(Color.ORANGE);
+				label.setToolTipText("Over the latency limit, restarting this process.");
+			});
 		}
 
 		@Override
@@ -85,12 +116,12 @@ public class PiperListItem extends JPanel {
 
 		@Override
 		public void onPiperProcessStart(PiperProcess process) {
-			AddProcess(process);
+			SwingUtilities.invokeLater(() -> AddProcess(process));
 		}
 
 		@Override
 		public void onPiperProcessExit(PiperProcess process) {
-			RemoveProcess(process);
+			SwingUtilities.invokeLater(() -> RemoveProcess(process));
 		}
 	}
 
@@ -0,0 +1,184 @@
+package dev.phyce.naturalspeech.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replaces shortened phrases with their full text, ex: "idk" -> "i don't know".
+ * Every phrase is compiled into one Aho-Corasick automaton, so a message is matched against all of them
+ * in a single pass no matter how many there are. Phrases can span several words, are matched case-insensitively,
+ * and only on whole words. Overlapping matches go to the leftmost, then the longest.
+ * Immutable once compiled, safe to share between threads.
+ */
+public final class PhraseExpander {
+	public static final PhraseExpander EMPTY = compile("");
+
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+
+	// per node, sorted outgoing characters and the nodes they lead to
+	private final char[][] labels;
+	private final int[][] targets;
+	// longest proper suffix of the node that is also in the trie
+	private final int[] fail;
+	// nearest node on the fail chain that ends a phrase, NONE if there isn't one
+	private final int[] dictionary;
+	// characters from the root, the matched length when the node ends a phrase
+	private final int[] depth;
+	// null unless a phrase ends at the node
+	private final String[] replacements;
+	private final int phraseCount;
+
+	/**
+	 * @param phrases one phrase per line, written as {@code shortened=full text}. Malformed lines are skipped,
+	 *                a phrase listed twice keeps the last full text.
+	 */
+	public static PhraseExpander compile(String phrases) {
+		List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+		List<String> replacements = new ArrayList<>();
+		List<Integer> depths = new ArrayList<>();
+		trie.add(new TreeMap<>());
+		replacements.add(null);
+		depths.add(0);
+
+		for (String line : phrases.split("\n")) {
+			String[] parts = line.split("=", 2);
+			if (parts.length != 2) continue;
+
+			String key = lowerCase(TextUtil.collapseWhitespace(parts[0]));
+			if (key.isEmpty()) continue;
+
+			int node = ROOT;
+			for (int i = 0; i < key.length(); i++) {
+				Integer next = trie.get(node).get(key.charAt(i));
+				if (next == null) {
+					next = trie.size();
+					trie.add(new TreeMap<>());
+					replacements.add(null);
+					depths.add(i + 1);
+					trie.get(node).put(key.charAt(i), next);
+				}
+				node = next;
+			}
+			replacements.set(node, parts[1].trim());
+		}
+
+		return new PhraseExpander(trie, replacements, depths);
+	}
+
+	private PhraseExpander(List<TreeMap<Character, Integer>> trie, List<String> replacements, List<Integer> depths) {
+		int size = trie.size();
+		labels = new char[size][];
+		targets = new int[size][];
+		fail = new int[size];
+		dictionary = new int[size];
+		depth = new int[size];
+		this.replacements = replacements.toArray(new String[0]);
+
+		int count = 0;
+		for (int node = 0; node < size; node++) {
+			TreeMap<Character, Integer> edges = trie.get(node);
+			labels[node] = new char[edges.size()];
+			targets[node] = new int[edges.size()];
+			int edge = 0;
+			for (Map.Entry<Character, Integer> entry : edges.entrySet()) {
+				labels[node][edge] = entry.getKey();
+				targets[node][edge] = entry.getValue();
+				edge++;
+			}
+			depth[node] = depths.get(node);
+			if (this.replacements[node] != null) count++;
+		}
+		phraseCount = count;
+
+		// breadth first, so a node's fail target is always resolved before the node
+		Arrays.fill(dictionary, NONE);
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int child : targets[ROOT]) {
+			fail[child] = ROOT;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			for (int edge = 0; edge < labels[node].length; edge++) {
+				char c = labels[node][edge];
+				int child = targets[node][edge];
+
+				int state = fail[node];
+				while (state != ROOT && step(state, c) == NONE) state = fail[state];
+				int next = step(state, c);
+				fail[child] = next != NONE? next: ROOT;
+				dictionary[child] = this.replacements[fail[child]] != null? fail[child]: dictionary[fail[child]];
+				queue.add(child);
+			}
+		}
+	}
+
+	public int size() {
+		return phraseCount;
+	}
+
+	/**
+	 * @return the text with words joined by single spaces and every shortened phrase replaced.
+	 */
+	public String expand(String text) {
+		String normalized = TextUtil.collapseWhitespace(text);
+		if (phraseCount == 0) return normalized;
+
+		int length = normalized.length();
+		// node of the longest phrase starting at each index, ROOT for none
+		int[] matches = null;
+
+		int state = ROOT;
+		for (int i = 0; i < length; i++) {
+			char c = Character.toLowerCase(normalized.charAt(i));
+			int next;
+			while ((next = step(state, c)) == NONE && state != ROOT) state = fail[state];
+			state = next != NONE? next: ROOT;
+
+			// phrases end here only on a word boundary
+			if (i + 1 < length && normalized.charAt(i + 1) != ' ') continue;
+
+			int output = replacements[state] != null? state: dictionary[state];
+			for (; output != NONE; output = dictionary[output]) {
+				int start = i + 1 - depth[output];
+				if (start > 0 && normalized.charAt(start - 1) != ' ') continue;
+
+				if (matches == null) matches = new int[length];
+				if (depth[output] > depth[matches[start]]) matches[start] = output;
+			}
+		}
+		if (matches == null) return normalized;
+
+		StringBuilder expanded = new StringBuilder(length + 32);
+		int i = 0;
+		while (i < length) {
+			int match = matches[i];
+			if (match != ROOT) {
+				expanded.append(replacements[match]);
+				i += depth[match];
+			}
+			else {
+				expanded.append(normalized.charAt(i++));
+			}
+		}
+		return expanded.toString();
+	}
+
+	private int step(int node, char c) {
+		int edge = Arrays.binarySearch(labels[node], c);
+		return edge >= 0? targets[node][edge]: NONE;
+	}
+
+	// per character, the same folding expand uses
+	private static String lowerCase(String text) {
+		char[] chars = text.toCharArray();
+		for (int i = 0; i < chars.length; i++) chars[i] = Character.toLowerCase(chars[i]);
+		return new String(chars);
+	}
+}
@@ -0,0 +1,109 @@
+package dev.phyce.naturalspeech.utils;
+
+import lombok.Value;
+
+/**
+ * Normalizes speech text into the exact string sent to Piper, so messages that would sound the same
+ * are the same string: whitespace is collapsed, spaces before closing punctuation are dropped,
+ * and runs of a repeated punctuation mark are cut down ("!!!" -> "!", "....." -> "...").
+ * Canonicalizing canonical text changes nothing. Game markup has to go through {@link #removeTags} first, once,
+ * canonicalize treats {@code <} and {@code >} as plain characters.
+ * Also hashes the result into a stable key for deduplication and caching, case is folded in the key only,
+ * since Piper reads some all capital words letter by letter.
+ */
+public final class TextCanonicalizer {
+	// 64-bit FNV-1a
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final int MAX_ELLIPSIS = 3;
+	private static final String CLOSING_PUNCTUATION = ".,!?;:";
+
+	/**
+	 * Game text to plain text, tags are removed ({@code <br>} separates words) and {@code <lt>}/{@code <gt>}
+	 * are decoded. The result can hold a literal {@code <} or {@code >}, so it must not be run twice.
+	 */
+	public static String removeTags(String text) {
+		if (text.indexOf('<') == -1) return text;
+
+		StringBuilder plain = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			int close = c == '<'? text.indexOf('>', i + 1): -1;
+			if (close == -1) {
+				plain.append(c);
+				continue;
+			}
+
+			int tagLength = close - i - 1;
+			boolean escape = tagLength == 2 && text.charAt(i + 2) == 't';
+			if (escape && text.charAt(i + 1) == 'l') plain.append('<');
+			else if (escape && text.charAt(i + 1) == 'g') plain.append('>');
+			// line breaks separate words, other tags (col, img, ...) are dropped in place
+			else if (tagLength == 2 && text.regionMatches(true, i + 1, "br", 0, 2)) plain.append(' ');
+			i = close;
+		}
+		return plain.toString();
+	}
+
+	/**
+	 * @param text plain text, see {@link #removeTags}
+	 */
+	public static CanonicalText canonicalize(String text) {
+		StringBuilder canonical = new StringBuilder(text.length());
+		boolean space = false;
+		// length of the punctuation run at the end of canonical
+		int run = 0;
+
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+
+			if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+				space = true;
+				continue;
+			}
+
+			// "hello !" sounds the same as "hello!"
+			if (CLOSING_PUNCTUATION.indexOf(c) != -1) space = false;
+
+			if (isPunctuation(c) && !space && canonical.length() > 0 && canonical.charAt(canonical.length() - 1) == c) {
+				if (c != '.' || run >= MAX_ELLIPSIS) continue;
+				run++;
+			}
+			else {
+				run = isPunctuation(c)? 1: 0;
+			}
+
+			if (space && canonical.length() > 0) canonical.append(' ');
+			space = false;
+			canonical.append(c);
+		}
+
+		String result = canonical.toString();
+		return new CanonicalText(result, key(result));
+	}
+
+	private static long key(String canonical) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < canonical.length(); i++) {
+			char c = Character.toLowerCase(canonical.charAt(i));
+			hash ^= c & 0xff;
+			hash *= FNV_PRIME;
+			hash ^= c >>> 8;
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+	// ASCII punctuation, \p{Punct}
+	private static boolean isPunctuation(char c) {
+		return c > ' ' && c < 127 && !Character.isLetterOrDigit(c);
+	}
+
+	@Value
+	public static class CanonicalText {
+		// sent to Piper as is
+		String text;
+		// equal for texts that only differ in case, stable across sessions
+		long key;
+	}
+}
@@ -2,58 +2,94 @@ package dev.phyce.naturalspeech.utils;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public final class TextUtil {
 
+	private static final int SOFT_LIMIT = 40;
+
+	/**
+	 * Splits a message into fragments for synthesis, breaking at sentence ends, at clause ends past
+	 * the soft limit, and never going over the hard limit (unless a single word is longer).
+	 * Scans the text once without regex, tokens are appended straight from the sentence.
+	 */
 	public static List<String> splitSentence(String sentence) {
-		final int softLimit = 40;
-		final int hardLimit = 80;
+		return splitSentence(sentence, SOFT_LIMIT, 1, SOFT_LIMIT);
+	}
+
+	/**
+	 * Latency first splitting, the first fragment is short so it's synthesized and starts playing sooner,
+	 * every fragment after is allowed to be larger, up to the usual size.
+	 * The hard limit is always twice the soft limit.
+	 *
+	 * @param firstSoftLimit soft limit of the first fragment
+	 * @param growth soft limit of each fragment over the one before it
+	 * @param maxSoftLimit soft limit the fragments grow up to
+	 */
+	public static List<String> splitSentence(String sentence, int firstSoftLimit, double growth, int maxSoftLimit) {
 		List<String> fragments = new ArrayList<>();
 		StringBuilder currentFragment = new StringBuilder();
+		int softLimit = 0;
+		int hardLimit = 0;
+		// fragment the limits were computed for
+		int sizedFragment = -1;
+
+		int end = 0;
+		while (true) {
+			int start = skipWhitespace(sentence, end);
+			if (start == sentence.length()) break;
+			end = skipToken(sentence, start);
+
+			if (sizedFragment != fragments.size()) {
+				sizedFragment = fragments.size();
+				softLimit = (int) Math.min(firstSoftLimit * Math.pow(growth, sizedFragment), maxSoftLimit);
+				hardLimit = softLimit * 2;
+			}
 
-		List<String> tokens = tokenize(sentence);
-
-		for (String token : tokens) {
-			if (currentFragment.length() + token.length() <= hardLimit) {
-				currentFragment.append(token);
+			if (currentFragment.length() + (end - start) <= hardLimit) {
+				currentFragment.append(sentence, start, end);
 
-				if (token.matches(".*[.!?]$")) {
-					fragments.add(currentFragment.toString().trim());
+				if (endsWith(sentence, start, end, "!.?")) {
+					fragments.add(trim(currentFragment, 0, currentFragment.length()));
 					currentFragment.setLength(0);
 					continue;
 				}
 
-				if (token.matches(".*[,-;/]$") && currentFragment.length() > softLimit) {
-					fragments.add(currentFragment.toString().trim());
+				if (endsWithClause(sentence, start, end) && currentFragment.length() > softLimit) {
+					fragments.add(trim(currentFragment, 0, currentFragment.length()));
 					currentFragment.setLength(0);
 					continue;
 				}
 			}
 			else {
-				int lastBreakPoint = findLastBreakPoint(currentFragment.toString(), softLimit, hardLimit);
+				int lastBreakPoint = findLastBreakPoint(currentFragment);
 				if (lastBreakPoint > 0) {
-					fragments.add(currentFragment.substring(0, lastBreakPoint).trim());
-					currentFragment = new StringBuilder(currentFragment.substring(lastBreakPoint).trim());
+					fragments.add(trim(currentFragment, 0, lastBreakPoint));
+					// keep the trimmed remainder in place
+					int from = lastBreakPoint;
+					int to = currentFragment.length();
+					while (from < to && currentFragment.charAt(from) <= ' ') from++;
+					while (to > from && currentFragment.charAt(to - 1) <= ' ') to--;
+					currentFragment.setLength(to);
+					currentFragment.delete(0, from);
 				}
 				else {
-					fragments.add(currentFragment.toString().trim());
+					fragments.add(trim(currentFragment, 0, currentFragment.length()));
 					currentFragment.setLength(0);
 				}
-				currentFragment.append(token);
+				currentFragment.append(sentence, start, end);
 			}
 
-			if (!token.matches("\\p{Punct}")) currentFragment.append(" ");
+			if (!isPunctuation(sentence, start, end)) currentFragment.append(" ");
 		}
 
-		if (currentFragment.length() > 0) fragments.add(currentFragment.toString().trim());
+		if (currentFragment.length() > 0) fragments.add(trim(currentFragment, 0, currentFragment.length()));
 
 		return fragments;
 	}
 
-	private static int findLastBreakPoint(String fragment, int softLimit, int hardLimit) {
+	private static int findLastBreakPoint(CharSequence fragment) {
 		int lastSpace = -1;
 
 		for (int i = 0; i < fragment.length(); i++) {
@@ -63,51 +99,89 @@ public final class TextUtil {
 		return lastSpace;
 	}
 
-	public static String expandShortenedPhrases(String text, Map<String, String> phrases) {
-		List<String> tokens = tokenize(text);
-		StringBuilder parsedMessage = new StringBuilder();
-		int lastIndex = 0;
-
-		for (String token : tokens) {
-			if (text.indexOf(token, lastIndex) > lastIndex) parsedMessage.append(" ");
-
-			String key = token.toLowerCase();
-			String replacement = phrases.getOrDefault(key, token);
-			parsedMessage.append(replacement);
-			lastIndex = text.indexOf(token, lastIndex) + token.length();
+	/**
+	 * @return the tokens joined by single spaces, without leading or trailing whitespace.
+	 */
+	public static String collapseWhitespace(String text) {
+		StringBuilder collapsed = new StringBuilder(text.length());
+
+		int end = 0;
+		while (true) {
+			int start = skipWhitespace(text, end);
+			if (start == text.length()) break;
+			if (collapsed.length() > 0) collapsed.append(' ');
+			end = skipToken(text, start);
+			collapsed.append(text, start, end);
 		}
 
-		return parsedMessage.toString();
+		return collapsed.length() == text.length()? text: collapsed.toString();
 	}
 
 	public static List<String> tokenize(String text) {
 		List<String> tokens = new ArrayList<>();
-		Matcher matcher = Pattern.compile("[^\\s]+").matcher(text);
 
-		while (matcher.find()) tokens.add(matcher.group());
+		int end = 0;
+		while (true) {
+			int start = skipWhitespace(text, end);
+			if (start == text.length()) break;
+			end = skipToken(text, start);
+			tokens.add(text.substring(start, end));
+		}
 
 		return tokens;
 	}
 
-	public static final Pattern patternAnyAlphaNumericChar = Pattern.compile(".*\\w.*");
-	public static boolean containAlphaNumeric(String text) {
-		return patternAnyAlphaNumericChar.matcher(text).matches();
+	// \s, ASCII whitespace only
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
 	}
 
-	public static String escape(String text) {
-		return text.replace("\\", "\\\\")
-			.replace("\"", "\\\"")
-			.replace("\b", "\\b")
-			.replace("\f", "\\f")
-			.replace("\n", "\\n")
-			.replace("\r", "\\r")
-			.replace("\t", "\\t");
+	private static int skipWhitespace(String text, int from) {
+		while (from < text.length() && isWhitespace(text.charAt(from))) from++;
+		return from;
 	}
 
-	public static String generateJson(String text, int voiceId) {
-		text = escape(text);
-		if(voiceId == -1) return String.format("{\"text\":\"%s\"}", text);
-		else return String.format("{\"text\":\"%s\", \"speaker_id\":%d}", text, voiceId);
+	private static int skipToken(String text, int from) {
+		while (from < text.length() && !isWhitespace(text.charAt(from))) from++;
+		return from;
+	}
+
+	/**
+	 * A token containing a line separator (U+0085, U+2028, U+2029) before its last character never
+	 * counts as ending a sentence or clause.
+	 */
+	private static boolean endsWith(String text, int start, int end, String endings) {
+		if (endings.indexOf(text.charAt(end - 1)) < 0) return false;
+		for (int i = start; i < end - 1; i++) {
+			char c = text.charAt(i);
+			if (c == '\u0085' || c == '\u2028' || c == '\u2029') return false;
+		}
+		return true;
+	}
+
+	// ',' through ';', which takes in '-', '.', '/', digits and ':'
+	private static boolean endsWithClause(String text, int start, int end) {
+		char last = text.charAt(end - 1);
+		return last >= ',' && last <= ';' && endsWith(text, start, end, String.valueOf(last));
+	}
+
+	// a lone ASCII punctuation character, \p{Punct}
+	private static boolean isPunctuation(String text, int start, int end) {
+		if (end - start != 1) return false;
+		char c = text.charAt(start);
+		return c > ' ' && c < 127 && !Character.isLetterOrDigit(c);
+	}
+
+	// same as String.trim, without copying the whole builder first
+	private static String trim(StringBuilder builder, int from, int to) {
+		while (from < to && builder.charAt(from) <= ' ') from++;
+		while (to > from && builder.charAt(to - 1) <= ' ') to--;
+		return builder.substring(from, to);
+	}
+
+	public static final Pattern patternAnyAlphaNumericChar = Pattern.compile(".*\\w.*");
+	public static boolean containAlphaNumeric(String text) {
+		return patternAnyAlphaNumericChar.matcher(text).matches();
 	}
 
 	private static final Pattern patternTargetWithLevel = Pattern.compile("(.+)  \\(level-\\d+\\)");
@@ -0,0 +1,89 @@
+package dev.phyce.naturalspeech.tts;
+
+import dev.phyce.naturalspeech.enums.OverLengthPolicy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+public class SynthesisGuardTest {
+	private final SynthesisGuard guard = new SynthesisGuard();
+
+	@Test
+	public void collapsesRepeatedCharacters() {
+		assertEquals("sooo good", guard("soooooooo good"));
+		assertEquals("no!!!", guard("no!!!!!!!!!"));
+		assertEquals("sooo", guard("sooo"));
+	}
+
+	@Test
+	public void collapsesRepeatedPatterns() {
+		assertEquals("lolol", guard("lolololololol"));
+		assertEquals("haha", guard("hahahahahaha"));
+		assertEquals("abcdabcd", guard("abcdabcdabcdabcd"));
+		// two repeats are left alone
+		assertEquals("haha", guard("haha"));
+	}
+
+	@Test
+	public void collapsesRepeatedWords() {
+		assertEquals("buying buying buying gf", guard("buying buying buying buying buying gf"));
+		assertEquals("Go go go", guard("Go go go GO go"));
+	}
+
+	@Test
+	public void keepsNumbers() {
+		assertEquals("selling for 1000000", guard("selling for 1000000"));
+		assertEquals("121212121212", guard("121212121212"));
+	}
+
+	@Test
+	public void keepsOrdinaryWords() {
+		String text = "banana Mississippi bookkeeper coconut Abracadabra, murmur tartar";
+		assertSame(text, guard(text));
+	}
+
+	@Test
+	public void unchangedTextIsReturnedAsIs() {
+		String text = "just a normal sentence, nothing to collapse here";
+		assertSame(text, guard(text));
+	}
+
+	@Test
+	public void capsLength() {
+		String text = "the quick brown fox jumps over the lazy dog";
+		assertEquals("the quick brown", guard.guard(text, 16, OverLengthPolicy.TRUNCATE));
+		assertEquals("the quick brown, and more", guard.guard(text, 16, OverLengthPolicy.SUMMARIZE));
+		assertEquals("the quick, and more", guard.guard("the quick, brown fox", 11, OverLengthPolicy.SUMMARIZE));
+		// 0 is no limit
+		assertEquals(text, guard.guard(text, 0, OverLengthPolicy.TRUNCATE));
+	}
+
+	@Test
+	public void capsSingleLongWord() {
+		assertEquals("abcdefghij", guard.guard("abcdefghijklmnopqrstuvwxyz", 10, OverLengthPolicy.TRUNCATE));
+		// never splits a surrogate pair
+		assertEquals("abcdefghi", guard.guard("abcdefghi😀xyz", 10, OverLengthPolicy.TRUNCATE));
+	}
+
+	@Test
+	public void idempotent() {
+		String[] texts = {"soooooo lololololol buying buying buying buying", "hahahahaha!!!!!", "aaaa bbbb aaaa"};
+		for (String text : texts) {
+			String once = guard(text);
+			assertEquals(text, once, guard(once));
+		}
+	}
+
+	@Test
+	public void recordsAvoidedMillis() {
+		guard.recordAvoided(100);
+		// a guarded message predicted to cost more isn't a saving
+		guard.recordAvoided(-5);
+		guard.recordAvoided(20);
+		assertEquals(120, guard.getAvoidedMillis());
+	}
+
+	private String guard(String text) {
+		return guard.guard(text, 0, OverLengthPolicy.TRUNCATE);
+	}
+}
@@ -0,0 +1,150 @@
+package dev.phyce.naturalspeech.tts;
+
+import dev.phyce.naturalspeech.enums.Gender;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class VoiceRegistryTest {
+	private static final int NAMES = 2_000;
+
+	@Test
+	public void empty() {
+		VoiceRegistry registry = new VoiceRegistry();
+		assertNull(registry.select("Zezima"));
+		assertNull(registry.random());
+		assertEquals(0, registry.count());
+	}
+
+	@Test
+	public void stableSelection() {
+		VoiceRegistry registry = new VoiceRegistry();
+		registry.addModel(model("libritts", 20, Gender.MALE));
+		registry.addModel(model("vctk", 10, Gender.FEMALE));
+
+		VoiceID voice = registry.select("Zezima");
+		assertNotNull(voice);
+		assertEquals(voice, registry.select("Zezima"));
+		// a new registry with the same models, selection doesn't depend on identity or session
+		VoiceRegistry restarted = new VoiceRegistry();
+		restarted.addModel(model("vctk", 10, Gender.FEMALE));
+		restarted.addModel(model("libritts", 20, Gender.MALE));
+		assertEquals(voice, restarted.select("Zezima"));
+		assertEquals(30, registry.count());
+	}
+
+	@Test
+	public void selectsByGender() {
+		VoiceRegistry registry = new VoiceRegistry();
+		registry.addModel(model("libritts", 20, Gender.MALE));
+		registry.addModel(model("vctk", 10, Gender.FEMALE));
+
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("vctk", registry.select("player" + i, Gender.FEMALE).getModelName());
+			assertEquals("libritts", registry.select("player" + i, Gender.MALE).getModelName());
+		}
+		assertNull(registry.select("Zezima", Gender.OTHER));
+	}
+
+	@Test
+	public void unknownGenderIsOther() {
+		VoiceRegistry registry = new VoiceRegistry();
+		registry.addModel(model("unknown", 5, null));
+		assertEquals("unknown", registry.select("Zezima", Gender.OTHER).getModelName());
+	}
+
+	@Test
+	public void addingAModelOnlyMovesSpeakersToIt() {
+		VoiceRegistry registry = new VoiceRegistry();
+		registry.addModel(model("a", 10, Gender.MALE));
+		registry.addModel(model("b", 10, Gender.MALE));
+		Map<String, VoiceID> before = assignments(registry);
+
+		registry.addModel(model("c", 10, Gender.MALE));
+		int moved = 0;
+		for (Map.Entry<String, VoiceID> entry : before.entrySet()) {
+			VoiceID after = registry.select(entry.getKey());
+			if (after.equals(entry.getValue())) continue;
+			assertEquals("c", after.getModelName());
+			moved++;
+		}
+		// c has a third of the voices, so it wins about a third of the speakers
+		assertTrue(String.valueOf(moved), Math.abs(moved - NAMES / 3) < NAMES / 20);
+
+		// and everyone goes back when it stops
+		registry.removeModel(model("c", 10, Gender.MALE));
+		assertEquals(before, assignments(registry));
+	}
+
+	@Test
+	public void removingAModelOnlyMovesItsSpeakers() {
+		VoiceRegistry registry = new VoiceRegistry();
+		registry.addModel(model("a", 10, Gender.MALE));
+		registry.addModel(model("b", 10, Gender.MALE));
+		registry.addModel(model("c", 10, Gender.MALE));
+		Map<String, VoiceID> before = assignments(registry);
+
+		registry.removeModel(model("b", 10, Gender.MALE));
+		for (Map.Entry<String, VoiceID> entry : before.entrySet()) {
+			if (entry.getValue().getModelName().equals("b")) continue;
+			assertEquals(entry.getValue(), registry.select(entry.getKey()));
+		}
+	}
+
+	@Test
+	public void restartingAModelKeepsAssignments() {
+		VoiceRegistry registry = new VoiceRegistry();
+		registry.addModel(model("a", 10, Gender.MALE));
+		registry.addModel(model("b", 10, Gender.MALE));
+		Map<String, VoiceID> before = assignments(registry);
+
+		registry.addModel(model("a", 10, Gender.MALE));
+		assertEquals(before, assignments(registry));
+		assertEquals(20, registry.count());
+	}
+
+	@Test
+	public void weightedByVoiceCount() {
+		VoiceRegistry registry = new VoiceRegistry();
+		registry.addModel(model("large", 30, Gender.MALE));
+		registry.addModel(model("small", 10, Gender.MALE));
+
+		int large = 0;
+		for (VoiceID voice : assignments(registry).values()) {
+			if (voice.getModelName().equals("large")) large++;
+		}
+		assertTrue(String.valueOf(large), Math.abs(large - NAMES * 3 / 4) < NAMES / 20);
+	}
+
+	@Test
+	public void randomIsActive() {
+		VoiceRegistry registry = new VoiceRegistry();
+		registry.addModel(model("a", 3, Gender.MALE));
+		registry.removeModel(model("a", 3, Gender.MALE));
+		registry.addModel(model("b", 3, Gender.FEMALE));
+
+		for (int i = 0; i < 100; i++) assertEquals("b", registry.random().getModelName());
+	}
+
+	private static Map<String, VoiceID> assignments(VoiceRegistry registry) {
+		Map<String, VoiceID> assignments = new HashMap<>();
+		for (int i = 0; i < NAMES; i++) assignments.put("player" + i, registry.select("player" + i));
+		return assignments;
+	}
+
+	private static ModelRepository.ModelLocal model(String name, int voices, Gender gender) {
+		ModelRepository.VoiceMetadata[] metadata = new ModelRepository.VoiceMetadata[voices];
+		for (int i = 0; i < voices; i++) {
+			metadata[i] = new ModelRepository.VoiceMetadata();
+			metadata[i].setName(name + i);
+			metadata[i].setGender(gender);
+			metadata[i].setPiperVoiceID(i);
+			metadata[i].setModelName(name);
+		}
+		return new ModelRepository.ModelLocal(name, null, null, metadata, 22050);
+	}
+}
@@ -0,0 +1,106 @@
+package dev.phyce.naturalspeech.tts.piper;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+
+public class PiperRequestEncoderTest {
+	private final PiperRequestEncoder encoder = new PiperRequestEncoder();
+	private final Gson gson = new Gson();
+
+	@Test
+	public void encode() {
+		assertEquals("{\"text\":\"hello\",\"speaker_id\":3}\n", encode("hello", 3, Float.NaN, null));
+		// single speaker models don't take a speaker_id
+		assertEquals("{\"text\":\"hello\"}\n", encode("hello", -1, Float.NaN, null));
+		assertEquals("{\"text\":\"hi\",\"speaker_id\":904,\"length_scale\":1.250}\n", encode("hi", 904, 1.25f, null));
+		assertEquals("{\"text\":\"hi\",\"length_scale\":0.500,\"output_file\":\"/dev/shm/a.wav\"}\n",
+			encode("hi", -1, 0.5f, "/dev/shm/a.wav"));
+	}
+
+	@Test
+	public void escapes() {
+		assertEquals("{\"text\":\"say \\\"hi\\\" \\\\ bye\"}\n", encode("say \"hi\" \\ bye", -1, Float.NaN, null));
+		assertEquals("{\"text\":\"a\\nb\\tc\\r\\b\\f\\u0001\\u001f\"}\n",
+			encode("a\nb\tc\r\b\f\u0001\u001f", -1, Float.NaN, null));
+		assertEquals("{\"text\":\"x\",\"output_file\":\"C:\\\\Temp\\\\a.wav\"}\n",
+			encode("x", -1, Float.NaN, "C:\\Temp\\a.wav"));
+	}
+
+	@Test
+	public void utf8() throws IOException {
+		String text = "caf\u00e9 \u20ac \uD83D\uDE00";
+		byte[] expected = ("{\"text\":\"" + text + "\"}\n").getBytes(StandardCharsets.UTF_8);
+		assertArrayEquals(expected, write(text, -1, Float.NaN, null));
+		// an unpaired surrogate can't be encoded, it's replaced like String.getBytes does
+		assertArrayEquals("{\"text\":\"a?b\"}\n".getBytes(StandardCharsets.UTF_8), write("a\uD83Db", -1, Float.NaN, null));
+	}
+
+	@Test
+	public void reusesBuffer() {
+		StringBuilder longText = new StringBuilder();
+		for (int i = 0; i < 1000; i++) longText.append("\u00e9\"");
+		encode(longText.toString(), 1, Float.NaN, null);
+		assertEquals("{\"text\":\"short\",\"speaker_id\":1}\n", encode("short", 1, Float.NaN, null));
+	}
+
+	@Test
+	public void roundTrips() throws IOException {
+		Random random = new Random(49);
+		for (int i = 0; i < 500; i++) {
+			String text = randomText(random);
+			int speakerId = random.nextInt(1000) - 1;
+			float lengthScale = random.nextBoolean()? Float.NaN: random.nextInt(3000) / 1000f;
+
+			String json = new String(write(text, speakerId, lengthScale, null), StandardCharsets.UTF_8);
+			assertFalse(json.substring(0, json.length() - 1).contains("\n"));
+			JsonObject request = gson.fromJson(json, JsonObject.class);
+			assertEquals(text, request.get("text").getAsString());
+			assertEquals(speakerId != -1, request.has("speaker_id"));
+			if (speakerId != -1) assertEquals(speakerId, request.get("speaker_id").getAsInt());
+			if (!Float.isNaN(lengthScale)) assertEquals(lengthScale, request.get("length_scale").getAsFloat(), 1e-6);
+		}
+	}
+
+	private String encode(String text, int speakerId, float lengthScale, String outputFile) {
+		return encoder.encode(text, speakerId, lengthScale, outputFile).toString();
+	}
+
+	private byte[] write(String text, int speakerId, float lengthScale, String outputFile) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encoder.encode(text, speakerId, lengthScale, outputFile).writeTo(out);
+		return out.toByteArray();
+	}
+
+	// every JSON escape, multi-byte characters and surrogate pairs, no unpaired surrogates
+	private static String randomText(Random random) {
+		StringBuilder text = new StringBuilder();
+		int length = random.nextInt(40);
+		for (int i = 0; i < length; i++) {
+			switch (random.nextInt(5)) {
+				case 0:
+					text.append((char) random.nextInt(0x20));
+					break;
+				case 1:
+					text.append("\"\\/ ".charAt(random.nextInt(4)));
+					break;
+				case 2:
+					text.append((char) (0x80 + random.nextInt(0xd800 - 0x80)));
+					break;
+				case 3:
+					text.appendCodePoint(0x10000 + random.nextInt(0x10ffff - 0x10000));
+					break;
+				default:
+					text.append((char) (0x20 + random.nextInt(0x5f)));
+			}
+		}
+		return text.toString();
+	}
+}
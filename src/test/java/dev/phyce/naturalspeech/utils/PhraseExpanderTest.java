@@ -0,0 +1,72 @@
+package dev.phyce.naturalspeech.utils;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class PhraseExpanderTest {
+	private static final String PHRASES = String.join("\n",
+		"u=you",
+		"ty=thank you",
+		"idk=I don't know",
+		"brb=be right back",
+		"gz=congratulations",
+		"i dk=I really don't know",
+		"ty all=thank you all",
+		"this line is malformed",
+		"=no key",
+		"gz=grats");
+
+	@Test
+	public void expandsWholeWords() {
+		PhraseExpander expander = PhraseExpander.compile(PHRASES);
+		assertEquals("thank you you rock", expander.expand("ty u rock"));
+		// punctuation is part of the word, same as the token based expansion it replaced
+		assertEquals("ty, you rock", expander.expand("ty, u rock"));
+		assertEquals("I don't know what you mean", expander.expand("idk what u mean"));
+		// only whole words, "u" isn't replaced inside "upu" or "ubrb"
+		assertEquals("upu ubrb", expander.expand("upu ubrb"));
+	}
+
+	@Test
+	public void caseInsensitive() {
+		PhraseExpander expander = PhraseExpander.compile("IDK=I don't know");
+		assertEquals("I don't know I don't know I don't know", expander.expand("idk IDK IdK"));
+	}
+
+	@Test
+	public void multiWordAndLongestMatch() {
+		PhraseExpander expander = PhraseExpander.compile(PHRASES);
+		assertEquals("thank you all", expander.expand("ty all"));
+		assertEquals("thank you allies", expander.expand("ty allies"));
+		assertEquals("I really don't know", expander.expand("i   dk"));
+	}
+
+	@Test
+	public void collapsesWhitespace() {
+		PhraseExpander expander = PhraseExpander.compile(PHRASES);
+		assertEquals("be right back soon", expander.expand("  brb \t soon "));
+		assertEquals("no phrases here", PhraseExpander.EMPTY.expand(" no  phrases here"));
+	}
+
+	@Test
+	public void compile() {
+		PhraseExpander expander = PhraseExpander.compile(PHRASES);
+		// malformed lines are skipped, the duplicate gz keeps the last full text
+		assertEquals(7, expander.size());
+		assertEquals("grats", expander.expand("gz"));
+		assertEquals(0, PhraseExpander.EMPTY.size());
+	}
+
+	@Test
+	public void overlappingKeys() {
+		PhraseExpander expander = PhraseExpander.compile(String.join("\n",
+			"a=<a>", "ab=<ab>", "a b=<a b>", "b a=<b a>", "ba=<ba>", "bab=<bab>", "c=<c>", "a b c=<a b c>"));
+		assertEquals("<a b c>", expander.expand("a b c"));
+		// leftmost first, then longest
+		assertEquals("<a b> <a>", expander.expand("a b a"));
+		assertEquals("<b a> b", expander.expand("b a b"));
+		assertEquals("<bab> <ba> <ab>", expander.expand("bab ba ab"));
+		assertEquals("<a b>", expander.expand("A  B"));
+		assertEquals("abc cab", expander.expand("abc cab"));
+	}
+}
@@ -0,0 +1,88 @@
+package dev.phyce.naturalspeech.utils;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import org.junit.Test;
+
+public class TextCanonicalizerTest {
+	private static final String[] CORPUS = {
+		"",
+		"Hello world",
+		"  hello   world  ",
+		"hello !",
+		"What?!?!",
+		"Wait.....",
+		"Wait . . . . .",
+		"no way!!!!!!",
+		"a - - b",
+		"I <3 you and you > me",
+		"x <_> y",
+		"I <lt>3 you and you <gt> me",
+		"x <lt>_<gt> y",
+		"<col=ff0000>red</col>",
+		"non\u00a0breaking\u2003spaces",
+		"tab\tand\nnewline",
+		"lol ,,, ok",
+	};
+	// characters that interact with each other in canonicalize
+	private static final String ALPHABET = "ab <>.!?,-:; \t";
+
+	@Test
+	public void removeTags() {
+		assertEquals("red", TextCanonicalizer.removeTags("<col=ff0000>red</col>"));
+		assertEquals("line one line two", TextCanonicalizer.removeTags("line one<br>line two"));
+		assertEquals("I <3 you", TextCanonicalizer.removeTags("I <lt>3 you"));
+		assertEquals("a <b> c", TextCanonicalizer.removeTags("a <lt>b<gt> c"));
+		assertEquals("1 < 2", TextCanonicalizer.removeTags("1 < 2"));
+	}
+
+	@Test
+	public void escapedBracketsAreSpoken() {
+		assertEquals("I <3 you and you > me", canonical(TextCanonicalizer.removeTags("I <lt>3 you and you <gt> me")));
+		assertEquals("x <_> y", canonical(TextCanonicalizer.removeTags("x <lt>_<gt> y")));
+	}
+
+	@Test
+	public void canonicalize() {
+		assertEquals("hello world", canonical("  hello   world  "));
+		assertEquals("hello!", canonical("hello !"));
+		assertEquals("no way!", canonical("no way!!!!!!"));
+		assertEquals("Wait...", canonical("Wait....."));
+		assertEquals("Wait...", canonical("Wait . . . . ."));
+		assertEquals("non breaking spaces", canonical("non\u00a0breaking\u2003spaces"));
+		assertEquals("a - - b", canonical("a - - b"));
+	}
+
+	@Test
+	public void idempotent() {
+		for (String text : CORPUS) assertIdempotent(text);
+
+		Random random = new Random(46);
+		for (int i = 0; i < 500; i++) {
+			StringBuilder text = new StringBuilder();
+			int length = random.nextInt(16);
+			for (int j = 0; j < length; j++) text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			assertIdempotent(text.toString());
+		}
+	}
+
+	@Test
+	public void keyFoldsCase() {
+		assertEquals(TextCanonicalizer.canonicalize("Hello World").getKey(),
+			TextCanonicalizer.canonicalize("hello   world").getKey());
+		assertNotEquals(TextCanonicalizer.canonicalize("hello").getKey(),
+			TextCanonicalizer.canonicalize("hello!").getKey());
+	}
+
+	private static void assertIdempotent(String text) {
+		TextCanonicalizer.CanonicalText once = TextCanonicalizer.canonicalize(text);
+		TextCanonicalizer.CanonicalText twice = TextCanonicalizer.canonicalize(once.getText());
+		assertEquals(text, once.getText(), twice.getText());
+		assertEquals(text, once.getKey(), twice.getKey());
+	}
+
+	private static String canonical(String text) {
+		return TextCanonicalizer.canonicalize(text).getText();
+	}
+}
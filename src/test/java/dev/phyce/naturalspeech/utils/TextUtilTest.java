@@ -0,0 +1,90 @@
+package dev.phyce.naturalspeech.utils;
+
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Pins splitSentence and tokenize to the output of the regex implementation they replaced,
+ * quirks included (the ',' to ';' clause range, lone punctuation, line separators, String.trim).
+ */
+public class TextUtilTest {
+	@Test
+	public void golden() {
+		golden("",
+			List.of(),
+			List.of());
+		golden("   ",
+			List.of(),
+			List.of());
+		golden("hello",
+			List.of("hello"),
+			List.of("hello"));
+		golden("  leading and trailing  ",
+			List.of("leading", "and", "trailing"),
+			List.of("leading and trailing"));
+		golden("Hello world. How are you? Fine!",
+			List.of("Hello", "world.", "How", "are", "you?", "Fine!"),
+			List.of("Hello world.", "How are you?", "Fine!"));
+		golden("Selling lobsters 200 ea, buying sharks 800 ea, pm me if interested in either",
+			List.of("Selling", "lobsters", "200", "ea,", "buying", "sharks", "800", "ea,", "pm", "me", "if", "interested", "in", "either"),
+			List.of("Selling lobsters 200 ea, buying sharks 800", "ea, pm me if interested in either"));
+		golden("a, very long sentence that keeps on going with commas, and more commas, and even more commas, until it has to break somewhere ok",
+			List.of("a,", "very", "long", "sentence", "that", "keeps", "on", "going", "with", "commas,", "and", "more", "commas,", "and", "even", "more", "commas,", "until", "it", "has", "to", "break", "somewhere", "ok"),
+			List.of("a, very long sentence that keeps on going with commas,", "and more commas, and even more commas, until it has to break somewhere ok"));
+		golden("xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx yy",
+			List.of("xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx", "yy"),
+			List.of("", "xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx", "yy"));
+		golden("this line is long enough to pass the soft limit and ends in a number 12345 then keeps going on for a while",
+			List.of("this", "line", "is", "long", "enough", "to", "pass", "the", "soft", "limit", "and", "ends", "in", "a", "number", "12345", "then", "keeps", "going", "on", "for", "a", "while"),
+			List.of("this line is long enough to pass the soft limit and ends in a number 12345", "then keeps going on for a while"));
+		golden("path like words a/b/c are clause ends too once the fragment is past forty chars / right",
+			List.of("path", "like", "words", "a/b/c", "are", "clause", "ends", "too", "once", "the", "fragment", "is", "past", "forty", "chars", "/", "right"),
+			List.of("path like words a/b/c are clause ends too once the fragment is past forty chars", "/right"));
+		golden("lone punctuation ! and ? and . between words",
+			List.of("lone", "punctuation", "!", "and", "?", "and", ".", "between", "words"),
+			List.of("lone punctuation !", "and ?", "and .", "between words"));
+		golden("wait . . . what",
+			List.of("wait", ".", ".", ".", "what"),
+			List.of("wait .", ".", ".", "what"));
+		golden("tabs\tand\nnewlines\r\nbetween words",
+			List.of("tabs", "and", "newlines", "between", "words"),
+			List.of("tabs and newlines between words"));
+		golden("line\u2028separator. inside a token",
+			List.of("line\u2028separator.", "inside", "a", "token"),
+			List.of("line\u2028separator. inside a token"));
+		golden("next\u0085line!",
+			List.of("next\u0085line!"),
+			List.of("next\u0085line!"));
+		golden("\u0001control\u0002chars",
+			List.of("\u0001control\u0002chars"),
+			List.of("control\u0002chars"));
+		golden("non\u00a0breaking space stays in the token.",
+			List.of("non\u00a0breaking", "space", "stays", "in", "the", "token."),
+			List.of("non\u00a0breaking space stays in the token."));
+		golden("no spaces at all but well over eighty characters long so it has to be cut somewhere in the middle",
+			List.of("no", "spaces", "at", "all", "but", "well", "over", "eighty", "characters", "long", "so", "it", "has", "to", "be", "cut", "somewhere", "in", "the", "middle"),
+			List.of("no spaces at all but well over eighty characters long so it has to be cut", "somewhere in the middle"));
+		golden("Sentence one! Sentence two? Sentence three. And a trailing clause without an end",
+			List.of("Sentence", "one!", "Sentence", "two?", "Sentence", "three.", "And", "a", "trailing", "clause", "without", "an", "end"),
+			List.of("Sentence one!", "Sentence two?", "Sentence three.", "And a trailing clause without an end"));
+		golden("\"quoted\" (parens) and 'single' ; semi: colon",
+			List.of("\"quoted\"", "(parens)", "and", "'single'", ";", "semi:", "colon"),
+			List.of("\"quoted\" (parens) and 'single' ;semi: colon"));
+	}
+
+	@Test
+	public void latencyFirst() {
+		String text = "Hey there, I was wondering if you could help me find the way to the bank, " +
+			"it's somewhere around here I think";
+		assertEquals(List.of("Hey there, I was", "wondering if you could help me find the",
+				"way to the bank, it's somewhere around here I think"),
+			TextUtil.splitSentence(text, 10, 2, 40));
+		assertEquals(TextUtil.splitSentence(text), TextUtil.splitSentence(text, 40, 1, 40));
+	}
+
+	private static void golden(String text, List<String> tokens, List<String> fragments) {
+		assertEquals(text, tokens, TextUtil.tokenize(text));
+		assertEquals(text, fragments, TextUtil.splitSentence(text));
+	}
+}